@@ -0,0 +1,127 @@
+import benchmarks.Library;
+import interfaces.ToStringFunction;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * {@link Library} implementation, see {@link Library} for why it lives in the unnamed package.
+ * */
+public final class PrinterLibrary implements Library {
+    private static final Printer printer = Printer.green;
+    private static final ToStringFunction<Object> toString = String::valueOf;
+
+    @Override
+    public void nullSink() {System.setOut(new PrintStream(OutputStream.nullOutputStream()));}
+
+    @Override
+    public void ansi(boolean enabled) {Printer.setAnsi(enabled);}
+
+    @Override
+    public void printStack(boolean enabled) {Printer.printStack(enabled);}
+
+    @Override
+    public void print(String message) {printer.print(message);}
+
+    @Override
+    public void print(String tag, String message) {printer.print(tag, message);}
+
+    @Override
+    public void print(String tag, Object o) {printer.print(tag, o);}
+
+    @Override
+    public void print(Object o) {printer.print(o);}
+
+    @Override
+    public void print(long l) {printer.print(l);}
+
+    @Override
+    public void print(int i) {printer.print(i);}
+
+    @Override
+    public void print(double d) {printer.print(d);}
+
+    @Override
+    public void print(boolean b) {printer.print(b);}
+
+    @Override
+    public void print(String tag, long l) {printer.print(tag, l);}
+
+    @Override
+    public void print(String tag, int i) {printer.print(tag, i);}
+
+    @Override
+    public void print(String tag, double d) {printer.print(tag, d);}
+
+    @Override
+    public void print(String tag, boolean b) {printer.print(tag, b);}
+
+    @Override
+    public void print(String tag, Integer i) {printer.print(tag, i);}
+
+    @Override
+    public void print(Integer i) {printer.print(i);}
+
+    @Override
+    public void print(Supplier<String> message) {printer.print(message);}
+
+    @Override
+    public void print(String tag, Supplier<String> message) {printer.print(tag, message);}
+
+    @Override
+    public void printWith(Object o) {printer.print(o, toString);}
+
+    @Override
+    public void printWith(String tag, Object o) {printer.print(tag, o, toString);}
+
+    @Override
+    public String depthStack(int depth) {return Printer.depthStack(depth);}
+
+    @Override
+    public String thisStack() {return Printer.thisStack();}
+
+    @Override
+    public Laps chrono(boolean recording) {
+        Printer.Chrono chrono = new Printer.Chrono(Printer.Chrono.Format.nanos, printer, true);
+        chrono.recording(recording);
+        return new Laps() {
+            @Override
+            public void lap() {chrono.lap();}
+
+            @Override
+            public void syncLap() {chrono.syncLap();}
+        };
+    }
+
+    @Override
+    public LongFunction<String> formatter(String format) {
+        Printer.Chrono.NanoFormat nanoFormat = Printer.Chrono.Format.of(format);
+        return nanos -> Printer.Chrono.formatNanos(nanoFormat, nanos);
+    }
+
+    @Override
+    public void exportParallelism(int threads) {Printer.Export.setParallelism(threads);}
+
+    @Override
+    public void saveCsv(String directory, String fileName, String[] headers, String[][] rows) {
+        Printer.Export.to_csv.save(directory, fileName, headers, rows);
+    }
+
+    @Override
+    public void editLines(String mode, String directory, String fileName, int[] lines, String[] contents) {
+        Printer.Editor.Line[] edits = new Printer.Editor.Line[lines.length];
+        for (int i = 0; i < lines.length; i++) edits[i] = new Printer.Editor.Line(lines[i], contents[i]);
+        switch (mode) {
+            case "editLine" -> Printer.Editor.TXT.editLine(directory, fileName, edits);
+            case "editLineMapped" -> Printer.Editor.TXT.editLineMapped(directory, fileName, edits);
+            case "apply" -> {
+                Printer.Editor.Edits ops = new Printer.Editor.Edits();
+                for (Printer.Editor.Line line : edits) ops.set(line.number(), line.content());
+                Printer.Editor.TXT.apply(directory, fileName, ops, Printer.Editor.Mode.copy);
+            }
+            default -> throw new IllegalArgumentException(mode);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code Chrono.lap} (CAS) vs {@code Chrono.syncLap} (monitor) on a single {@code Chrono} shared by 1, 4 and all cores.
+ * <p> With {@code recording} laps go to the histogram, which isolates the contention from the printing.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChronoBenchmark {
+    private static final Library library = Library.INSTANCE;
+
+    @Param({"true", "false"})
+    boolean recording;
+
+    Library.Laps chrono;
+
+    @Setup
+    public void setUp() {
+        library.nullSink();
+        chrono = library.chrono(recording);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void lap_1() {chrono.lap();}
+
+    @Benchmark
+    @Threads(4)
+    public void lap_4() {chrono.lap();}
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void lap_max() {chrono.lap();}
+
+    @Benchmark
+    @Threads(1)
+    public void syncLap_1() {chrono.syncLap();}
+
+    @Benchmark
+    @Threads(4)
+    public void syncLap_4() {chrono.syncLap();}
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void syncLap_max() {chrono.syncLap();}
+}
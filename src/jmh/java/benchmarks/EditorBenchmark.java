@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Replaces 2 lines of a large generated HTML-like file.
+ * <p> {@code editLineMapped} reuses the cached line index after its first invocation.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EditorBenchmark {
+    private static final Library library = Library.INSTANCE;
+
+    @Param({"64", "512"})
+    int megabytes;
+
+    @Param({"editLine", "editLineMapped", "apply"})
+    String mode;
+
+    Path directory;
+    int[] lines;
+    String[] contents = {"<td class=\"edited\">first</td>", "<td class=\"edited\">second</td>"};
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("editor-bench");
+        long target = megabytes * (1L << 20), written = 0;
+        int line = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("report.txt"))) {
+            while (written < target) {
+                String row = "<tr><td>" + line + "</td><td class=\"value\">" + (line * 31L) + "</td></tr>\n";
+                writer.write(row);
+                written += row.length();
+                line++;
+            }
+        }
+        lines = new int[]{10, line / 2};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public void editTwoLines() {library.editLines(mode, directory.toString(), "report", lines, contents);}
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+    private static final Library library = Library.INSTANCE;
+    private static final String[] headers = {"id", "nanos", "label", "note"};
+
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    String[][] data;
+    Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        library.nullSink();
+        library.exportParallelism(parallelism);
+        directory = Files.createTempDirectory("export-bench");
+        data = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = new String[]{Integer.toString(i), Long.toString(i * 7919L), "label, " + i, i % 10 == 0 ? "say \"hi\"" : "note"};
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        library.exportParallelism(1);
+        Files.deleteIfExists(directory.resolve("bench.csv"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void toCsv() {library.saveCsv(directory.toString(), "bench", headers, data);}
+}
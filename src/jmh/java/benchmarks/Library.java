@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * The calls under measurement.
+ * <p> {@code Printer} lives in the unnamed package, which named packages cannot reference,
+ * while JMH requires benchmarks to be in a named package.
+ * The calls are reached through this interface, implemented by {@code PrinterLibrary} in the unnamed package.
+ * Its single implementation keeps every call site monomorphic, so the JIT inlines it.
+ * */
+public interface Library {
+    Library INSTANCE = load();
+
+    private static Library load() {
+        try {
+            return (Library) Class.forName("PrinterLibrary").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Redirects {@code System.out} to a sink that discards everything, so that only the library cost is measured.
+     * */
+    void nullSink();
+
+    void ansi(boolean enabled);
+
+    void printStack(boolean enabled);
+
+    void print(String message);
+
+    void print(String tag, String message);
+
+    void print(String tag, Object o);
+
+    void print(Object o);
+
+    void print(long l);
+
+    void print(int i);
+
+    void print(double d);
+
+    void print(boolean b);
+
+    void print(String tag, long l);
+
+    void print(String tag, int i);
+
+    void print(String tag, double d);
+
+    void print(String tag, boolean b);
+
+    void print(String tag, Integer i);
+
+    void print(Integer i);
+
+    void print(Supplier<String> message);
+
+    void print(String tag, Supplier<String> message);
+
+    /**
+     * {@code print(T, ToStringFunction)}
+     * */
+    void printWith(Object o);
+
+    /**
+     * {@code print(String, T, ToStringFunction)}
+     * */
+    void printWith(String tag, Object o);
+
+    String depthStack(int depth);
+
+    String thisStack();
+
+    interface Laps {
+        void lap();
+
+        void syncLap();
+    }
+
+    /**
+     * @param recording if true laps are recorded into a histogram instead of printed.
+     * */
+    Laps chrono(boolean recording);
+
+    LongFunction<String> formatter(String format);
+
+    void exportParallelism(int threads);
+
+    void saveCsv(String directory, String fileName, String[] headers, String[][] rows);
+
+    /**
+     * @param mode one of {@code editLine}, {@code editLineMapped} or {@code apply}.
+     * */
+    void editLines(String mode, String directory, String fileName, int[] lines, String[] contents);
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Every {@code print} overload, written to a null sink, with and without the provenance of {@code printStack}.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrintBenchmark {
+    private static final Library library = Library.INSTANCE;
+
+    @Param({"false", "true"})
+    boolean printStack;
+
+    // Non final fields, so the arguments are not constant folded.
+    String tag = "TAG", message = "The quick brown fox jumps over the lazy dog";
+    Object object = new StringBuilder("an object");
+    long aLong = 1234567890123L;
+    int anInt = 123456;
+    double aDouble = 1234.5678;
+    boolean aBoolean = true;
+    Integer boxed = 654321;
+    Supplier<String> supplier = () -> message;
+
+    @Setup
+    public void setUp() {
+        library.nullSink();
+        library.ansi(true);
+        library.printStack(printStack);
+    }
+
+    @TearDown
+    public void tearDown() {
+        library.printStack(false);
+    }
+
+    @Benchmark
+    public void string() {library.print(message);}
+
+    @Benchmark
+    public void tagString() {library.print(tag, message);}
+
+    @Benchmark
+    public void tagObject() {library.print(tag, object);}
+
+    @Benchmark
+    public void object() {library.print(object);}
+
+    @Benchmark
+    public void primitiveLong() {library.print(aLong);}
+
+    @Benchmark
+    public void primitiveInt() {library.print(anInt);}
+
+    @Benchmark
+    public void primitiveDouble() {library.print(aDouble);}
+
+    @Benchmark
+    public void primitiveBoolean() {library.print(aBoolean);}
+
+    @Benchmark
+    public void tagLong() {library.print(tag, aLong);}
+
+    @Benchmark
+    public void tagInt() {library.print(tag, anInt);}
+
+    @Benchmark
+    public void tagDouble() {library.print(tag, aDouble);}
+
+    @Benchmark
+    public void tagBoolean() {library.print(tag, aBoolean);}
+
+    @Benchmark
+    public void tagInteger() {library.print(tag, boxed);}
+
+    @Benchmark
+    public void integer() {library.print(boxed);}
+
+    @Benchmark
+    public void supplier() {library.print(supplier);}
+
+    @Benchmark
+    public void tagSupplier() {library.print(tag, supplier);}
+
+    @Benchmark
+    public void toStringFunction() {library.printWith(object);}
+
+    @Benchmark
+    public void tagToStringFunction() {library.printWith(tag, object);}
+}
@@ -2,20 +2,67 @@ import interfaces.StringUnaryOperator;
 import interfaces.ToStringFunction;
 
 import java.io.*;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
 import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.time.Duration;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * A Java Print dependency for easy debugging, uses the default {@link System#out} {@link PrintStream}.
- * <p> Methods like {@link #setAutoFlush(boolean)} will alter the global state of {@link System#out}.
+ * <p> Methods like {@link #setAutoFlush(boolean)} will alter the global state of {@link System#out},
+ * see {@link #setSink(Sink)} to print somewhere else.
  * <p> Sub-components:
  * <ul>
  *     <li>
@@ -27,6 +74,27 @@ import java.util.function.Function;
  *     <li>
  *         {@link Editor}
  *     </li>
+ *     <li>
+ *         {@link Async}
+ *     </li>
+ *     <li>
+ *         {@link Filter}
+ *     </li>
+ *     <li>
+ *         {@link Sink}
+ *     </li>
+ *     <li>
+ *         {@link Recorder}
+ *     </li>
+ *     <li>
+ *         {@link Metrics}
+ *     </li>
+ *     <li>
+ *         {@link RateLimit}
+ *     </li>
+ *     <li>
+ *         {@link Sampler}
+ *     </li>
  * </ul>
  * */
 public enum Printer {
@@ -45,9 +113,7 @@ public enum Printer {
     interface Applier {
         String apply(StringUnaryOperator op, String s);
         Applier ident = Function::apply;
-        Applier stack = (op, s) -> op.apply(s.concat(ToStringFunction.StackPrinter.PROV.toString(
-                Thread.currentThread().getStackTrace(), Printer.range
-        )));
+        Applier stack = (op, s) -> op.apply(s.concat(Stacks.provenance()));
     }
 
     private Applier printer;
@@ -67,6 +133,7 @@ public enum Printer {
      * <p> To change the format in which the {@link StackTraceElement}s are displayed see
      * {@link ToStringFunction.StackPrinter.Params}
      * <p> To change the range of stacks to be display see {@link Printer#range}
+     * <p> To change the number of frames captured see {@link Stacks#frames(int)}
      * */
     public static void printStack(boolean value) {
         if (printStack != value) {
@@ -90,13 +157,81 @@ public enum Printer {
      * When setting {@link #printStack} to true, this parameter will redefine the way in which the stack is displayed.
      * @see ToStringFunction.Arrays.ViewRange
      * @implNote Will be set to {@link ToStringFunction.Arrays.ViewRange#single(int)} with a value of 3 by default.
+     * <p> Index 3 is the first frame outside {@link Printer}, see {@link Stacks}.
      * */
     public static ToStringFunction.Arrays.ViewRange range = ToStringFunction.Arrays.ViewRange.single(3);
 
+    /**
+     * The color prefix, pre-encoded.
+     * */
+    private final byte[] ansi;
+
     Printer(String color) {
-        colorWrap = s -> color + s + ANSI_RESET;
+        colorWrap = s -> colors() ? color + s + ANSI_RESET : s;
         printer = isStackPrinted() ? Applier.stack : Applier.ident;
+        ansi = color.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final byte[]
+            ANSI_RESET_BYTES = ANSI_RESET.getBytes(StandardCharsets.US_ASCII),
+            D_DOT = ": ".getBytes(StandardCharsets.US_ASCII),
+            LONG_EQ = "long = ".getBytes(StandardCharsets.US_ASCII),
+            INT_EQ = "int = ".getBytes(StandardCharsets.US_ASCII),
+            INTEGER_EQ = "Integer = ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * ANSI color codes are only written when the output is a terminal,
+     * this can be overridden via the {@code printer.ansi} system property ({@code true} | {@code false})
+     * or via {@link #setAnsi(boolean)}.
+     * */
+    private static volatile boolean ansi_enabled = detectAnsi();
+
+    private static boolean detectAnsi() {
+        String prop = System.getProperty("printer.ansi");
+        return prop != null ? Boolean.parseBoolean(prop) : System.console() != null;
+    }
+
+    /**
+     * Enables or disables the ANSI color codes.
+     * <p> By default, colors are enabled only when {@link System#console()} is present (stdout is a terminal),
+     * some IDE consoles render colors but are not detected as terminals, use {@code -Dprinter.ansi=true} in those cases.
+     * @return true if the value changed.
+     * */
+    public static boolean setAnsi(boolean enabled) {
+        if (ansi_enabled == enabled) return false;
+        ansi_enabled = enabled;
+        return true;
+    }
+
+    /**
+     * @return true if ANSI color codes are being written.
+     * */
+    public static boolean isAnsi() {return ansi_enabled;}
+
+    /**
+     * Per-thread reusable line buffers.
+     * */
+    private static final ThreadLocal<Bytes> lines = ThreadLocal.withInitial(() -> new Bytes(256));
+
+    /**
+     * @return the reset line buffer of the current thread with the color prefix already written.
+     * */
+    private Bytes begin() {
+        if (Metrics.enabled) Metrics.print(this);
+        Bytes line = lines.get();
+        line.reset();
+        if (colors()) line.put(ansi);
+        return line;
+    }
 
+    /**
+     * Appends the stack (if {@link #printStack(boolean)}), the color reset and the line separator before emitting the line.
+     * */
+    private static void end(Bytes line) {
+        if (printStack) line.utf8(Stacks.provenance());
+        if (colors()) line.put(ANSI_RESET_BYTES);
+        emit(line.newLine());
+        line.trim();
     }
 
     /**
@@ -104,11 +239,14 @@ public enum Printer {
      * @param message the message to be printed
      * */
     public void print(String message) {
-        System.out.println(printer.apply(colorWrap, message));
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.MESSAGE, null, message);
+            return;
+        }
+        end(begin().utf8(message));
     }
 
-    private static final String d_dot = ": ";
-
     /**
      * Prints a message with a `TAG` of format:
      * <p> TAG: [Message begins here...]
@@ -116,481 +254,6782 @@ public enum Printer {
      * @param message the message to be printed.
      * */
     public void print(String TAG, String message) {
-        System.out.println(printer.apply(colorWrap, TAG + d_dot + message));
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.MESSAGE, TAG, message);
+            return;
+        }
+        end(begin().utf8(TAG).put(D_DOT).utf8(message));
     }
 
     /**
      * Variation of {@link #print(String, String)} that will call {@link String#valueOf(Object)}
      * */
     public void print(String TAG, Object o) {
-        System.out.println(printer.apply(colorWrap, TAG + d_dot + o));
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.OBJECT, TAG, o);
+            return;
+        }
+        String message = String.valueOf(o);
+        end(begin().utf8(TAG).put(D_DOT).utf8(message));
     }
 
     public void print(Object o) {
-        System.out.println(printer.apply(colorWrap, String.valueOf(o)));
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.OBJECT, null, o);
+            return;
+        }
+        String message = String.valueOf(o);
+        end(begin().utf8(message));
     }
 
     public void print(long aLong) {
-        System.out.println(printer.apply(colorWrap, "long = ".concat(Long.toString(aLong))));
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.LONG, null, aLong);
+            return;
+        }
+        end(begin().put(LONG_EQ).digits(aLong));
+    }
+
+    public void print(int i) {
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.INT, null, i);
+            return;
+        }
+        end(begin().put(LONG_EQ).digits(i));
+    }
+
+    public void print(double aDouble) {
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.DOUBLE, null, Double.doubleToRawLongBits(aDouble));
+            return;
+        }
+        end(begin().digits(aDouble));
+    }
+
+    public void print(boolean aBoolean) {
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.BOOLEAN, null, aBoolean ? 1 : 0);
+            return;
+        }
+        end(begin().bool(aBoolean));
+    }
+
+    public void print(String TAG, long aLong) {
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.LONG, TAG, aLong);
+            return;
+        }
+        end(begin().utf8(TAG).put(D_DOT).digits(aLong));
     }
 
     public void print(String TAG, int i) {
-        System.out.println(printer.apply(colorWrap, TAG + d_dot + "int = " + i));
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.INT, TAG, i);
+            return;
+        }
+        end(begin().utf8(TAG).put(D_DOT).put(INT_EQ).digits(i));
+    }
+
+    public void print(String TAG, double aDouble) {
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.DOUBLE, TAG, Double.doubleToRawLongBits(aDouble));
+            return;
+        }
+        end(begin().utf8(TAG).put(D_DOT).digits(aDouble));
+    }
+
+    public void print(String TAG, boolean aBoolean) {
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.BOOLEAN, TAG, aBoolean ? 1 : 0);
+            return;
+        }
+        end(begin().utf8(TAG).put(D_DOT).bool(aBoolean));
     }
 
     public void print(String TAG, Integer i) {
-        System.out.println(printer.apply(colorWrap, TAG + d_dot + "Integer = " + i));
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.INTEGER, TAG, i == null ? 0 : i, i == null ? 1 : 0, null, null);
+            return;
+        }
+        Bytes line = begin().utf8(TAG).put(D_DOT).put(INTEGER_EQ);
+        end(i == null ? line.utf8(null) : line.digits(i.intValue()));
     }
 
     public void print(Integer i) {
-        System.out.println(printer.apply(colorWrap, "Integer = " + i));
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.INTEGER, null, i == null ? 0 : i, i == null ? 1 : 0, null, null);
+            return;
+        }
+        Bytes line = begin().put(INTEGER_EQ);
+        end(i == null ? line.utf8(null) : line.digits(i.intValue()));
     }
 
-    private static final PrintStream nonFlushed = System.out, flushed = new PrintStream(System.out, true);
+    /**
+     * Prints {@code text} without checking the {@link Filter}.
+     * */
+    void printText(CharSequence text) {
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.MESSAGE, null, text.toString());
+            return;
+        }
+        end(begin().utf8(text));
+    }
 
     /**
-     * Sets the default {@link System#out} {@link PrintStream} to {@link PrintStream#PrintStream(OutputStream, boolean)}.
-     * <p> Where: {@code autoflush} boolean = true.
-     * @see PrintWriter#PrintWriter(java.io.Writer, boolean)
+     * Prints the message supplied by {@code message}.
+     * <p> The {@link Supplier} will only be called if this print is not suppressed by the {@link Filter}.
      * */
-    public static boolean setAutoFlush(boolean autoFlush) {
-        if ((flushed == System.out) == autoFlush) return false;
-        System.setOut(autoFlush ? flushed : nonFlushed);
-        return true;
+    public void print(Supplier<String> message) {
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.SUPPLIER, null, message);
+            return;
+        }
+        String s = message.get();
+        end(begin().utf8(s));
     }
 
     /**
-     * Wide {@link String} divisor.
+     * Variation of {@link #print(String, String)} where the message is lazily supplied.
+     * <p> The {@link Supplier} will only be called if this print is not suppressed by the {@link Filter}.
      * */
-    public static final String
-            divisor =
-            """
+    public void print(String TAG, Supplier<String> message) {
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.SUPPLIER, TAG, message);
+            return;
+        }
+        String s = message.get();
+        end(begin().utf8(TAG).put(D_DOT).utf8(s));
+    }
 
-                     || >>>>>>>> || ** \s
-                    ================\s
-                     || >>>>>>>> || ** \s""".indent(1);
+    /**
+     * Prints the {@link String} representation of {@code o} given by {@code toString}.
+     * <p> The {@link ToStringFunction} will only be called if this print is not suppressed by the {@link Filter}.
+     * */
+    public<T> void print(T o, ToStringFunction<? super T> toString) {
+        if (!emits(null)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.FUNCTION, null, 0, 0, o, toString);
+            return;
+        }
+        String s = toString.asString(o);
+        end(begin().utf8(s));
+    }
 
-    private static final String space = "\s";
-    private static String toPhrase(String... words) {
-        return String.join(space, words);
+    /**
+     * Variation of {@link #print(Object, ToStringFunction)} with a `TAG`.
+     * */
+    public<T> void print(String TAG, T o, ToStringFunction<? super T> toString) {
+        if (!emits(TAG)) return;
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.FUNCTION, TAG, 0, 0, o, toString);
+            return;
+        }
+        String s = toString.asString(o);
+        end(begin().utf8(TAG).put(D_DOT).utf8(s));
     }
 
-    public static String depthStack(int depth) {
-        StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        return toPhrase(ofSize(
-                depth,
-                i -> elements[4 + i].toString() + ", \n "
-        ));
+    /**
+     * Prints {@code template}, where every {@code {}} is replaced by the next argument, e.g.:
+     * <pre>{@code
+     * Printer.yellow.printf("Loaded {} rows from {}", rows, path);
+     * }</pre>
+     * <p> The arguments are rendered only if this print is not suppressed by the {@link Filter},
+     * and when the {@link Async} mode is enabled, they are rendered by the writer thread.
+     * <p> The template is parsed once and cached by identity, so it should be a constant.
+     * <p> Templates have their own method name, so that they never resolve to the `TAG` overloads of {@code print},
+     * e.g. {@code print("TAG", 5L)} prints {@code "TAG: 5"} while {@code printf("TAG {}", 5L)} prints {@code "TAG 5"}.
+     * @implNote Since the rendering may be deferred, mutable arguments may be displayed in a later state.
+     * @see Template
+     * */
+    public void printf(String template, Object... args) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, args));
+        else end(t.render(begin(), args));
     }
 
-    private static String[] ofSize(
-            int ofLength,
-            ToStringFunction.FromInt xIntFunction
-    ) {
-        String[] result = new String[ofLength];
-        for (int i = 0; i < ofLength; i++) {
-            result[i] = xIntFunction.asString(i);
-        }
-        return result;
+    /**
+     * Variation of {@link #printf(String, Object...)} without the varargs array.
+     * */
+    public void printf(String template, Object a, Object b) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, new Object[]{a, b}));
+        else end(t.render(begin(), a, b));
     }
 
-    public static String thisStack() {
-        return Thread.currentThread().getStackTrace()[3].toString();
+    /**
+     * Variation of {@link #printf(String, Object...)} without the varargs array.
+     * */
+    public void printf(String template, Object a, Object b, Object c) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, new Object[]{a, b, c}));
+        else end(t.render(begin(), a, b, c));
     }
 
     /**
-     * Component that helps is the measure of nanos via
-     * atomic CAS-sing.
+     * Variation of {@link #printf(String, Object...)} where the arguments are not boxed.
      * */
-    public static final class Chrono {
-        private static int id = 0;
-        private volatile long begin;
-        private final Object lock = new Object();
-        private volatile long last;
-        private final Format format;
-        private final Printer color;
-        private final int chronoId = id++;
+    public void printf(String template, long a, long b) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, Template.LONGS, 2, a, b, 0));
+        else end(t.render(begin(), Template.LONGS, 2, a, b, 0));
+    }
 
+    /**
+     * Variation of {@link #printf(String, Object...)} where the arguments are not boxed.
+     * */
+    public void printf(String template, long a, long b, long c) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, Template.LONGS, 3, a, b, c));
+        else end(t.render(begin(), Template.LONGS, 3, a, b, c));
+    }
 
-        private static final VarHandle VAR_HANDLE;
+    /**
+     * Variation of {@link #printf(String, Object...)} where the arguments are not boxed.
+     * */
+    public void printf(String template, double a, double b) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        if (Recorder.recording || pipeline != null) {
+            defer(new Template.Message(this, t, Template.DOUBLES, 2, Double.doubleToRawLongBits(a), Double.doubleToRawLongBits(b), 0));
+        } else end(t.render(begin(), Template.DOUBLES, 2, Double.doubleToRawLongBits(a), Double.doubleToRawLongBits(b), 0));
+    }
 
-        static {
-            try {
-                VAR_HANDLE = MethodHandles.lookup().findVarHandle(Chrono.class, "last", long.class);
-            } catch (ReflectiveOperationException e) {
-                throw new ExceptionInInitializerError(e);
-            }
-        }
+    /**
+     * Variation of {@link #printf(String, Object...)} where the arguments are not boxed.
+     * */
+    public void printf(String template, double a, double b, double c) {
+        if (!emits(null)) return;
+        Template t = Template.of(template);
+        long ab = Double.doubleToRawLongBits(a), bb = Double.doubleToRawLongBits(b), cb = Double.doubleToRawLongBits(c);
+        if (Recorder.recording || pipeline != null) defer(new Template.Message(this, t, Template.DOUBLES, 3, ab, bb, cb));
+        else end(t.render(begin(), Template.DOUBLES, 3, ab, bb, cb));
+    }
 
-        private boolean compareAndSet(long prev, long next) {
-            return VAR_HANDLE.compareAndSet(this, prev, next);
+    /**
+     * Prints the elements of {@code array} within the {@link ArrayWindow}, followed by its statistics,
+     * e.g. for {@code print(array, 3, 2)}:
+     * <pre>{@code
+     * int[1000000] = [0, 1, 2, ... 999995 more ..., 999998, 999999] {min = 0, max = 999999, sum = 499999500000}
+     * }</pre>
+     * <p> The elements are encoded straight into the line buffer, without boxing nor intermediate {@link String}s.
+     * @see ArrayWindow
+     * */
+    public void print(int[] array) {printArray(null, "int", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * Variation of {@link #print(int[])} with a `TAG`.
+     * */
+    public void print(String TAG, int[] array) {printArray(TAG, "int", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * Variation of {@link #print(int[])} with its own window.
+     * @param head the number of leading elements displayed.
+     * @param tail the number of trailing elements displayed.
+     * */
+    public void print(int[] array, int head, int tail) {printArray(null, "int", array, head, tail);}
+
+    /**
+     * @see #print(int[])
+     * */
+    public void print(long[] array) {printArray(null, "long", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * Variation of {@link #print(long[])} with a `TAG`.
+     * */
+    public void print(String TAG, long[] array) {printArray(TAG, "long", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * @see #print(int[], int, int)
+     * */
+    public void print(long[] array, int head, int tail) {printArray(null, "long", array, head, tail);}
+
+    /**
+     * @see #print(int[])
+     * */
+    public void print(double[] array) {printArray(null, "double", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * Variation of {@link #print(double[])} with a `TAG`.
+     * */
+    public void print(String TAG, double[] array) {printArray(TAG, "double", array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * @see #print(int[], int, int)
+     * */
+    public void print(double[] array, int head, int tail) {printArray(null, "double", array, head, tail);}
+
+    /**
+     * Variation of {@link #print(int[])} for {@link Object} arrays, where elements are displayed as in {@link Template}.
+     * <p> No statistics are displayed.
+     * */
+    public void print(Object[] array) {printArray(null, null, array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * Variation of {@link #print(Object[])} with a `TAG`.
+     * */
+    public void print(String TAG, Object[] array) {printArray(TAG, null, array, ArrayWindow.head, ArrayWindow.tail);}
+
+    /**
+     * @see #print(int[], int, int)
+     * */
+    public void print(Object[] array, int head, int tail) {printArray(null, null, array, head, tail);}
+
+    /**
+     * @param type the component type, {@code null} for {@link Object} arrays.
+     * */
+    private void printArray(String TAG, String type, Object array, int head, int tail) {
+        if (!emits(TAG)) return;
+        if (head < 0 || tail < 0) throw new IllegalArgumentException("head and tail must be >= 0, were: " + head + ", " + tail);
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.OBJECT, TAG, new ArrayWindow.View(type, array, head, tail));
+            return;
         }
+        Bytes line = begin();
+        if (TAG != null) line.utf8(TAG).put(D_DOT);
+        end(ArrayWindow.render(line, type, array, head, tail, true));
+    }
 
-        private void print(
-                String prefix, long toFormat
-        ) {
-            color.print(
-                    prefix + " at (chrono = " + chronoId + ")..." + formatNanos(format, toFormat)
-            );
+    /**
+     * Hands the unrendered {@code message} to the {@link Recorder} or the {@link Async} writer,
+     * or renders it in place if neither takes it.
+     * */
+    private void defer(Template.Message message) {
+        if (Recorder.recording) {
+            Recorder.record(this, Recorder.OBJECT, null, message);
+            return;
+        }
+        final Async.Pipeline p = pipeline;
+        if (p != null) {
+            // the stack belongs to this thread.
+            if (printStack) message.stack = Stacks.provenance();
+            if (p.offer(message)) {
+                if (Metrics.enabled) Metrics.print(this);
+                return;
+            }
         }
+        end(message.render(begin()));
+    }
+
+    /**
+     * A parsed message template, where every {@code {}} is a placeholder for the next argument.
+     * <p> A placeholder can be escaped as {@code \{}}, in which case {@code {}} is displayed.
+     * <p> Placeholders without argument are displayed as {@code {}}, and arguments without placeholder are ignored.
+     * <p> Arguments are displayed as:
+     * <ul>
+     *     <li>
+     *         {@link Long}, {@link Integer}, {@link Short}, {@link Byte}, {@link Double}, {@link Float} and {@link Boolean}
+     *         encoded in place, as their {@code toString()} would.
+     *     </li>
+     *     <li>
+     *         {@link CharSequence}s as they are.
+     *     </li>
+     *     <li>
+     *         Any other {@link Object} via {@link String#valueOf(Object)}.
+     *     </li>
+     * </ul>
+     * @implNote Parsed templates are kept in a direct-mapped cache of {@value CACHE} entries, keyed by the identity
+     * of the template {@link String}, so that looking a constant template up costs a single array read and comparison.
+     * Templates that collide replace each other.
+     * */
+    static final class Template {
+        static final byte OBJECTS = 0, LONGS = 1, DOUBLES = 2;
 
+        private static final int CACHE = 1 << 9;
         /**
-         * Prints the elapsed time since a {@link #start()} was called.
+         * Entries are immutable, so racy reads and writes are safe.
          * */
-        public void elapsed() {
-            System.out.println(color.printer.apply(color.colorWrap,
-                    "Elapsed" + " at (chrono = " + chronoId + ")..." + formatNanos(format, System.nanoTime() - begin)
-            ));
-        }
+        private static final Template[] cache = new Template[CACHE];
+        private static final byte[] HOLE = "{}".getBytes(StandardCharsets.US_ASCII);
 
+        final String source;
         /**
-         * @return the nano long values since a {@link #start()} was called.
+         * The UTF-8 encoded text between placeholders, one more than the placeholders.
          * */
-        public long elapsedNanos() {
-            long res = System.nanoTime() - begin;
-            assert begin != 0 : "Must have called 'start()' or 'silentStart()' first.";
-            return res;
+        final byte[][] literals;
+
+        private Template(String source) {
+            this.source = source;
+            List<byte[]> literals = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0, l = source.length(); i < l; i++) {
+                char c = source.charAt(i);
+                if (c == '\\' && source.startsWith("{}", i + 1)) {
+                    literal.append("{}");
+                    i += 2;
+                } else if (c == '{' && i + 1 < l && source.charAt(i + 1) == '}') {
+                    literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+                    literal.setLength(0);
+                    i++;
+                } else literal.append(c);
+            }
+            literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+            this.literals = literals.toArray(new byte[0][]);
+        }
+
+        static Template of(String source) {
+            if (source == null) source = "null";
+            final int slot = System.identityHashCode(source) & (CACHE - 1);
+            Template t = cache[slot];
+            if (t == null || t.source != source) cache[slot] = t = new Template(source);
+            return t;
         }
 
         /**
-         * Prints the time passed since last time this method was called
-         * OR since a {@link #start()} was first called.
-         * The operation is performed atomically
+         * @return the number of placeholders.
          * */
-        public void lap() {
-            long prev = last, now = System.nanoTime();
-            assert last != 0 : "Must have called .start()";
-            long lap = now - prev;
-            if (compareAndSet(prev, now)) {
-                print(
-                        "Lapsed", lap);
+        int holes() {return literals.length - 1;}
+
+        Bytes render(Bytes into, Object... args) {
+            final byte[][] literals = this.literals;
+            final int holes = literals.length - 1;
+            for (int i = 0; i < holes; i++) {
+                into.put(literals[i]);
+                if (args != null && i < args.length) value(into, args[i]);
+                else into.put(HOLE);
             }
+            return into.put(literals[holes]);
         }
 
         /**
-         * {@code `synchronized`} version of {@link #lap()}
+         * @param kind either {@link #LONGS} or {@link #DOUBLES}, where doubles are given as their raw bits.
          * */
-        public void syncLap() {
-            synchronized (lock) {
-                long prev = last;
-                long lap = System.nanoTime() - prev;
-                last = lap;
-                print(
-                        "Sync lapsed", lap);
+        Bytes render(Bytes into, byte kind, int arity, long a, long b, long c) {
+            final byte[][] literals = this.literals;
+            final int holes = literals.length - 1;
+            for (int i = 0; i < holes; i++) {
+                into.put(literals[i]);
+                if (i >= arity) {
+                    into.put(HOLE);
+                    continue;
+                }
+                long value = i == 0 ? a : i == 1 ? b : c;
+                if (kind == LONGS) into.digits(value);
+                else into.digits(Double.longBitsToDouble(value));
             }
+            return into.put(literals[holes]);
         }
 
-        private static final String nanos_format = "%d Nanos";
-        private static final String full_format = "%d Secs. %d Millis. %d Nanos";
+        static void value(Bytes into, Object o) {
+            if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) into.digits(((Number) o).longValue());
+            else if (o instanceof Double d) into.digits(d.doubleValue());
+            else if (o instanceof Boolean b) into.bool(b);
+            else if (o instanceof CharSequence s) into.utf8(s);
+            else if (o instanceof Float f) into.utf8(f.toString());
+            else into.utf8(String.valueOf(o));
+        }
 
         /**
-         * Defines the way in which the {@link Chrono} object will print the time passed.
+         * A template print whose rendering is deferred.
          * */
-        public enum Format {
+        static final class Message {
+            final Printer color;
+            final Template template;
+            final Object[] args;
+            final byte kind;
+            final int arity;
+            final long a, b, c;
             /**
-             * Will display just the nanos passed.
+             * The provenance captured by the printing thread, if {@link #printStack(boolean)}.
              * */
-            nanos(
-                    duration -> String.format(nanos_format, duration.getNano())
-            ),
+            String stack;
+
+            Message(Printer color, Template template, Object[] args) {
+                this(color, template, OBJECTS, 0, 0, 0, 0, args);
+            }
+
+            Message(Printer color, Template template, byte kind, int arity, long a, long b, long c) {
+                this(color, template, kind, arity, a, b, c, null);
+            }
+
+            private Message(Printer color, Template template, byte kind, int arity, long a, long b, long c, Object[] args) {
+                this.color = color;
+                this.template = template;
+                this.kind = kind;
+                this.arity = arity;
+                this.a = a;
+                this.b = b;
+                this.c = c;
+                this.args = args;
+            }
+
             /**
-             * Will display the nanos passed in the format: {@link #full_format}
+             * @return {@code into} with the rendered text.
              * */
-            full(
-                    duration -> String.format(full_format, duration.getSeconds(), duration.toMillisPart(), duration.toNanosPart())
-            );
-            final Function<Duration, String> format;
+            Bytes render(Bytes into) {
+                return kind == OBJECTS ? template.render(into, args) : template.render(into, kind, arity, a, b, c);
+            }
 
-            Format(Function<Duration, String> format) {
-                this.format = format;
+            /**
+             * Appends the complete line, as {@link #end(Bytes)} would.
+             * */
+            void renderLine(Bytes into) {
+                boolean colors = colors();
+                if (colors) into.put(color.ansi);
+                render(into);
+                if (stack != null) into.utf8(stack);
+                if (colors) into.put(ANSI_RESET_BYTES);
+                into.newLine();
             }
-        }
 
-        static String formatNanos(Format format, long nanoseconds) {
-            Duration duration = Duration.ofNanos(nanoseconds); // create a duration object
-            return format.format.apply(duration);
+            @Override
+            public String toString() {
+                Bytes bytes = new Bytes(64);
+                render(bytes);
+                return new String(bytes.buf, 0, bytes.len, StandardCharsets.UTF_8);
+            }
         }
+    }
+
+    /**
+     * Window of the elements displayed by the array prints, e.g. {@link #print(int[])}.
+     * <p> The first {@link #head()} and last {@link #tail()} elements are displayed, the ones in between are counted.
+     * <p> Numeric arrays are followed by their length, min, max and sum, computed over every element
+     * (see {@link #stats(boolean)}).
+     * @implNote Lines longer than {@value CHUNK} bytes are written in chunks while encoding, so that an unbounded
+     * window does not grow the line buffer past that size. Chunks from concurrent prints may interleave.
+     * */
+    public static final class ArrayWindow {
+        static final int CHUNK = 1 << 13;
 
-        static final SimpleDateFormat sdf = new SimpleDateFormat("hh:mm a");
+        private static final byte[]
+                OPEN = "] = [".getBytes(StandardCharsets.US_ASCII),
+                NULL_ARRAY = "[] = null".getBytes(StandardCharsets.US_ASCII),
+                COMMA = ", ".getBytes(StandardCharsets.US_ASCII),
+                ELIDED = "... ".getBytes(StandardCharsets.US_ASCII),
+                MORE = " more ...".getBytes(StandardCharsets.US_ASCII),
+                MIN = "] {min = ".getBytes(StandardCharsets.US_ASCII),
+                MAX = ", max = ".getBytes(StandardCharsets.US_ASCII),
+                SUM = ", sum = ".getBytes(StandardCharsets.US_ASCII);
+
+        static volatile int head = 32, tail = 8;
+        private static volatile boolean stats = true;
+
+        private ArrayWindow() {}
 
         /**
-         * Default implementation of {@link #Chrono(Format, Printer, boolean)}.
-         * <p> Where:
-         * <ul>
-         *     <li>
-         *         {@code start} = {@code false}
-         *     </li>
-         * </ul>
+         * Sets the default window, 32 leading and 8 trailing elements by default.
+         * <p> Use {@link Integer#MAX_VALUE} as {@code head} to display every element.
          * */
-        public Chrono(Format format, Printer color) {
-            this(format, color, false);
+        public static void set(int head, int tail) {
+            if (head < 0 || tail < 0) throw new IllegalArgumentException("head and tail must be >= 0, were: " + head + ", " + tail);
+            ArrayWindow.head = head;
+            ArrayWindow.tail = tail;
         }
 
+        public static int head() {return head;}
+
+        public static int tail() {return tail;}
+
         /**
-         * Mina constructor for the {@link Chrono} class
-         * @param start, set's the chronometer going when this constructor is called with true.
-         * @param color the color of the print
-         * @param format the {@link Format} by which the nanos will be displayed.
+         * Enables or disables the statistics of numeric arrays, enabled by default.
          * */
-        public Chrono(Format format, Printer color, boolean start) {
-            this.color = color;
-            this.format = format;
-            if (start) start();
+        public static void stats(boolean enabled) {stats = enabled;}
+
+        public static boolean isStats() {return stats;}
+
+        /**
+         * An array print whose rendering is deferred, see {@link Recorder}.
+         * */
+        record View(String type, Object array, int head, int tail) {
+            @Override
+            public String toString() {
+                Bytes bytes = render(new Bytes(64), type, array, head, tail, false);
+                return new String(bytes.buf, 0, bytes.len, StandardCharsets.UTF_8);
+            }
         }
 
         /**
-         * Default implementation of {@link #Chrono(Format, Printer)}
-         * <p> Where:
-         * <ul>
-         *     <li>
-         *         {@link Format} = {@link Format#full}
-         *     </li>
-         * </ul>
+         * @param type the component type, {@code null} for {@link Object} arrays.
+         * @param chunked true if {@code into} is a line that may be emitted in {@link #CHUNK}s.
+         * @return {@code into}, where the remaining chunk is left.
          * */
-        public Chrono(Printer color) {
-            this(Format.full, color);
+        static Bytes render(Bytes into, String type, Object array, int head, int tail, boolean chunked) {
+            if (type == null) type = array == null ? "Object" : array.getClass().getComponentType().getSimpleName();
+            into.utf8(type);
+            if (array == null) return into.put(NULL_ARRAY);
+            final int length = array instanceof int[] ints ? ints.length
+                    : array instanceof long[] longs ? longs.length
+                    : array instanceof double[] doubles ? doubles.length
+                    : ((Object[]) array).length;
+            into.put((byte) '[').digits(length).put(OPEN);
+            final int shownHead = Math.min(head, length), shownTail = Math.min(tail, length - shownHead);
+            for (int i = 0; i < shownHead; i++) {
+                if (i != 0) into.put(COMMA);
+                element(into, array, i);
+                if (chunked && into.len >= CHUNK) chunk(into);
+            }
+            final int elided = length - shownHead - shownTail;
+            if (elided > 0) {
+                if (shownHead != 0) into.put(COMMA);
+                into.put(ELIDED).digits(elided).put(MORE);
+            }
+            for (int i = length - shownTail; i < length; i++) {
+                if (i != 0) into.put(COMMA);
+                element(into, array, i);
+                if (chunked && into.len >= CHUNK) chunk(into);
+            }
+            if (!stats || length == 0 || array instanceof Object[]) return into.put((byte) ']');
+            into.put(MIN);
+            if (array instanceof int[] ints) {
+                int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+                long sum = 0;
+                for (int v : ints) {
+                    if (v < min) min = v;
+                    if (v > max) max = v;
+                    sum += v;
+                }
+                into.digits(min).put(MAX).digits(max).put(SUM).digits(sum);
+            } else if (array instanceof long[] longs) {
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE, sum = 0;
+                double approximate = 0;
+                boolean overflow = false;
+                for (long v : longs) {
+                    if (v < min) min = v;
+                    if (v > max) max = v;
+                    long r = sum + v;
+                    overflow |= ((sum ^ r) & (v ^ r)) < 0;
+                    sum = r;
+                    approximate += v;
+                }
+                into.digits(min).put(MAX).digits(max).put(SUM);
+                if (overflow) into.digits(approximate);
+                else into.digits(sum);
+            } else {
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0;
+                for (double v : (double[]) array) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                    sum += v;
+                }
+                into.digits(min).put(MAX).digits(max).put(SUM).digits(sum);
+            }
+            return into.put((byte) '}');
+        }
+
+        private static void element(Bytes into, Object array, int i) {
+            if (array instanceof int[] ints) into.digits(ints[i]);
+            else if (array instanceof long[] longs) into.digits(longs[i]);
+            else if (array instanceof double[] doubles) into.digits(doubles[i]);
+            else Template.value(into, ((Object[]) array)[i]);
+        }
+
+        private static void chunk(Bytes line) {
+            emit(line);
+            line.reset();
+        }
+    }
+
+    /**
+     * Severity of the prints of each {@link Printer} color.
+     * @see Filter#level(Printer, Level)
+     * @see Filter#threshold(Level)
+     * */
+    public enum Level {
+        trace, debug, info, warn, error
+    }
+
+    private volatile boolean enabled = true;
+    private volatile Level level = Level.info;
+
+    /**
+     * @return true if a print with the given {@code TAG} (nullable) should be emitted.
+     * */
+    boolean emits(String TAG) {
+        return !Filter.isActive() || Filter.test(this, TAG);
+    }
+
+    /**
+     * Global, per-color, severity and tag-prefix filters for every {@link Printer} and {@link Chrono} print.
+     * <p> Suppressed prints return before any {@link String} conversion or encoding takes place.
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.Filter.level(Printer.red, Printer.Level.error);
+     * Printer.Filter.threshold(Printer.Level.warn); // only red prints pass
+     * Printer.Filter.exclude("Noisy");              // tags starting with "Noisy" are suppressed
+     * Printer.red.print(TAG, () -> expensiveDump());
+     * }</pre>
+     * @implNote While every filter is in its default state, the check performed by each print is a single read of a
+     * {@link MutableCallSite} target, which the JIT constant-folds. Changing any filter invalidates the compiled code
+     * depending on it.
+     * */
+    public static final class Filter {
+        private static final MutableCallSite active_site = new MutableCallSite(MethodHandles.constant(boolean.class, false));
+        private static final MethodHandle active = active_site.dynamicInvoker();
+
+        private static volatile boolean enabled = true;
+        private static volatile Level threshold = Level.trace;
+        private static final String[] none = new String[0];
+        private static volatile String[] includes = none, excludes = none;
+
+        private Filter() {}
+
+        static boolean isActive() {
+            try {
+                return (boolean) active.invokeExact();
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        static boolean test(Printer color, String TAG) {
+            return passes(color, TAG) && (!RateLimit.active || RateLimit.acquire(color, TAG));
+        }
+
+        private static boolean passes(Printer color, String TAG) {
+            if (!enabled || !color.enabled || color.level.compareTo(threshold) < 0) return false;
+            if (TAG == null) return true;
+            for (String prefix : excludes) if (TAG.startsWith(prefix)) return false;
+            final String[] includes = Filter.includes;
+            if (includes.length == 0) return true;
+            for (String prefix : includes) if (TAG.startsWith(prefix)) return true;
+            return false;
+        }
+
+        static synchronized void update() {
+            boolean next = !enabled || threshold != Level.trace || includes.length != 0 || excludes.length != 0 || RateLimit.active;
+            if (!next) {
+                for (Printer color : values()) {
+                    if (!color.enabled || color.level != Level.info) {
+                        next = true;
+                        break;
+                    }
+                }
+            }
+            if (isActive() != next) {
+                active_site.setTarget(MethodHandles.constant(boolean.class, next));
+                MutableCallSite.syncAll(new MutableCallSite[]{active_site});
+            }
         }
 
         /**
-         * Default implementation of {@link #Chrono(Format, Printer, boolean)}
-         * <p> Where:
-         * <ul>
-         *     <li>
-         *         {@link Format} = {@link Format#full}
-         *     </li>
-         * </ul>
+         * Enables or disables every print globally.
          * */
-        Chrono(Printer color, boolean start) {
-            this(Format.full, color, start);
+        public static void enable(boolean enabled) {
+            Filter.enabled = enabled;
+            update();
         }
 
         /**
-         * Will set the starting time ({@link #begin}) to the exact {@link System#nanoTime()} when this method is being called.
+         * Enables or disables the prints of a single color.
          * */
-        public void start() {
-            this.begin = System.nanoTime();
-            this.last = begin;
-            System.out.println(color.printer.apply(color.colorWrap,
-                    "Chrono " + chronoId + ", begins at = " + sdf.format(new Date(System.currentTimeMillis()))
-            ));
+        public static void enable(Printer color, boolean enabled) {
+            color.enabled = enabled;
+            update();
         }
 
         /**
-         * Will trigger a {@link #start()} without printing
+         * @return false if prints are globally disabled.
          * */
-        public void silentStart() {
-            this.begin = System.nanoTime();
-            this.last = begin;
+        public static boolean isEnabled() {return enabled;}
+
+        /**
+         * @return false if the prints of {@code color} are disabled, either globally or individually.
+         * */
+        public static boolean isEnabled(Printer color) {return enabled && color.enabled;}
+
+        /**
+         * Sets the {@link Level} of the prints performed by {@code color}, {@link Level#info} by default.
+         * */
+        public static void level(Printer color, Level level) {
+            if (level == null) throw new NullPointerException("level");
+            color.level = level;
+            update();
         }
 
         /**
-         * Without printing, this method will set the starting time ({@link #begin}) to the exact {@link System#nanoTime()}.
+         * @return the {@link Level} of the prints performed by {@code color}.
          * */
-        public String startText() {
-            this.begin = System.nanoTime();
-            this.last = begin;
-            return color.printer.apply(color.colorWrap,
-                    "Chrono " + chronoId + ", begins at = " + sdf.format(new Date(System.currentTimeMillis()))
-            );
+        public static Level level(Printer color) {return color.level;}
+
+        /**
+         * Prints of colors with a {@link Level} lower than {@code threshold} will be suppressed, {@link Level#trace} by default.
+         * */
+        public static void threshold(Level threshold) {
+            if (threshold == null) throw new NullPointerException("threshold");
+            Filter.threshold = threshold;
+            update();
         }
 
         /**
-         * @return a {@link Chrono} object that implements a {@link #Chrono(Printer, boolean)} constructor,
-         * <p> Where:
-         * <ul>
-         *     <li>
-         *         {@code start} = true
-         *     </li>
-         * </ul>
+         * @return the current minimum {@link Level}.
          * */
-        public static Chrono begin(Printer color) {
-            return new Chrono(color, true);
+        public static Level threshold() {return threshold;}
+
+        /**
+         * When at least one prefix is included, only tagged prints whose `TAG` starts with any of the prefixes will be emitted.
+         * <p> Prints without a `TAG` are not affected.
+         * <p> Calling this method without arguments clears the included prefixes.
+         * */
+        public static void include(String... prefixes) {
+            includes = prefixes.clone();
+            update();
         }
-    }
 
-    /**
-     * A <a href="package-summary.html">functional interface</a> for exporting data to a file.
-     */
-    @FunctionalInterface
-    interface Exporter {
         /**
-         * Saves the provided headers and data to a file in the specified directory with the given file name.
-         *
-         * @param DIRECTORY the directory where the file will be saved
-         * @param fileName the name of the file without the extension
-         * @param headers an array of header values to be written as the first line of the file
-         * @param data a 2D array representing the data rows to be written to the file. Each sub-array should match the length of the headers array
-         *
-         * <p>Example usage:</p>
-         * <pre>{@code
-         * public class ExporterExample {
-         *     public static void main(String[] args) {
-         *         String directory = "C:\\exports";
-         *         String fileName = "example";
-         *         String[] headers = {"ID", "Name", "Age"};
-         *         String[][] data = {
-         *             {"1", "Alice", "30"},
-         *             {"2", "Bob", "25"},
-         *             {"3", "Charlie", "35"}
-         *         };
-         *
-         *         Export.to_csv.save(directory, fileName, headers, data);
-         *     }
-         * }
-         * }</pre>
-         */
-        void save(
-                String DIRECTORY,
-                String fileName,
-                String[] headers, String[][] data
-        );
+         * Tagged prints whose `TAG` starts with any of the prefixes will be suppressed.
+         * <p> Calling this method without arguments clears the excluded prefixes.
+         * */
+        public static void exclude(String... prefixes) {
+            excludes = prefixes.clone();
+            update();
+        }
+
+        /**
+         * Resets every filter to its default state.
+         * */
+        public static synchronized void reset() {
+            enabled = true;
+            threshold = Level.trace;
+            includes = none;
+            excludes = none;
+            for (Printer color : values()) {
+                color.enabled = true;
+                color.level = Level.info;
+            }
+            update();
+        }
     }
 
     /**
-     * Standard set of {@link Exporter} file extensions implementations.
-     * @see Exporter#save(String, String, String[], String[][])
+     * Token bucket rate limiting of the prints, per call-site or per `TAG`, with collapsing of the suppressed prints.
+     * <p> When a print exceeds its limit it is suppressed, and the next print admitted for the same key is preceded
+     * by a single summary line, written in the same color:
+     * <pre>{@code
+     * Main.loop(Main.java:42): repeated 1843209 times in 1.000 s
+     * }</pre>
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.RateLimit.limit(10, 20);                 // every color, 10 prints per second with bursts of 20.
+     * Printer.RateLimit.limit(Printer.red, 100, 100);  // red overrides the global limit.
+     * Printer.RateLimit.key(Printer.RateLimit.Key.tag);
+     * }</pre>
+     * <p> Pending summaries are printed by {@link #flush()}, which is also performed at exit.
+     * @implNote The call-site key is taken from the first frame outside {@link Printer}, walked via {@link StackWalker}
+     * without building a {@link StackTraceElement}.
+     * <p> Keys are hashed into a fixed table of {@value SLOTS} buckets, whose state is a single {@code long}
+     * (the theoretical arrival time of the next print, as in GCRA) updated via CAS, plus a counter of suppressed prints.
+     * A key may take any of the {@value PROBES} buckets that follow its hash, so that colliding keys keep their own state.
+     * When all of them are taken, the key takes over the one with the earliest arrival time, after its pending summary is printed,
+     * and keeps that arrival time, so that keys evicting each other are never admitted more than either of them would be.
+     * <p> While no limit is set, the check is folded into the same constant {@link Filter} check, so it has no cost.
      * */
-    public enum Export implements Exporter {
-        to_csv(
-                ".csv"
-        );
+    public static final class RateLimit {
+        /**
+         * The key of the bucket of each print.
+         * */
+        public enum Key {
+            /**
+             * Every line that prints has its own bucket.
+             * */
+            call_site,
+            /**
+             * Every `TAG` has its own bucket, prints without `TAG` fall back to {@link #call_site}.
+             * */
+            tag
+        }
 
-        final String type;
+        private record Limit(long interval, long tolerance) {
+            static Limit of(double perSecond, int burst) {
+                if (!(perSecond > 0)) throw new IllegalArgumentException("perSecond must be > 0, was: " + perSecond);
+                if (burst < 1) throw new IllegalArgumentException("burst must be >= 1, was: " + burst);
+                long interval = Math.max(1, (long) (1e9 / perSecond));
+                return new Limit(interval, interval * burst);
+            }
+        }
 
-        Export(String type) {
-            this.type = type;
+        private record Owner(Printer color, Object key) {
+            @Override
+            public String toString() {
+                return key instanceof StackWalker.StackFrame frame ? frame.toStackTraceElement().toString() : String.valueOf(key);
+            }
         }
 
-        @Override
-        public void save(String DIRECTORY, String fileName, String[] headers, String[][] data) {
+        private static final int SLOTS = 1 << 10, PROBES = 4;
+        private static final int[] hashes = new int[SLOTS];
+        private static final long[] arrivals = new long[SLOTS], suppressed = new long[SLOTS], since = new long[SLOTS];
+        private static final Owner[] owners = new Owner[SLOTS];
+        private static final VarHandle
+                INTS = MethodHandles.arrayElementVarHandle(int[].class),
+                LONGS = MethodHandles.arrayElementVarHandle(long[].class),
+                OWNERS = MethodHandles.arrayElementVarHandle(Owner[].class);
 
-            BufferedWriter csvWriter = null;
-            // Construct the file path
-            String filePath = DIRECTORY + "\\" +fileName;
+        static volatile boolean active;
+        private static volatile Key key = Key.call_site;
+        private static volatile Limit global;
+        private static volatile Limit[] limits = new Limit[values().length];
+        private static boolean hooked;
 
-            try {
-                csvWriter = new BufferedWriter(new FileWriter(filePath + type));
+        private RateLimit() {}
 
-                // Write headers
-                csvWriter.write(String.join(",", headers));
-                csvWriter.newLine();
+        /**
+         * Limits the prints of every color without its own limit.
+         * @param perSecond the sustained rate of prints per key.
+         * @param burst the number of prints admitted at once before the rate applies.
+         * */
+        public static synchronized void limit(double perSecond, int burst) {
+            global = Limit.of(perSecond, burst);
+            update();
+        }
 
-                // Write data
-                for (String[] row : data) {
-                    assert row.length == headers.length :
-                            "Data row length (" + row.length + ") does not match headers length (" + headers.length + ")";
-                    csvWriter.write(String.join(",", row));
-                    csvWriter.newLine();
-                }
+        /**
+         * Limits the prints of {@code color}, overriding the global limit.
+         * @see #limit(double, int)
+         * */
+        public static synchronized void limit(Printer color, double perSecond, int burst) {
+            Limit[] next = limits.clone();
+            next[color.ordinal()] = Limit.of(perSecond, burst);
+            limits = next;
+            update();
+        }
 
-                // Flushing can be controlled manually
-                csvWriter.flush();
-                System.out.println("CSV file created successfully at: " + filePath);
+        /**
+         * Sets the key of the buckets, {@link Key#call_site} by default.
+         * */
+        public static void key(Key key) {
+            if (key == null) throw new NullPointerException("key");
+            RateLimit.key = key;
+        }
 
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                // Ensure the writer is closed
-                if (csvWriter != null) {
-                    try {
-                        csvWriter.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+        /**
+         * @return the key of the buckets.
+         * */
+        public static Key key() {return key;}
+
+        /**
+         * @return true if any limit is set.
+         * */
+        public static boolean isActive() {return active;}
+
+        /**
+         * Prints the summary of every bucket with suppressed prints.
+         * */
+        public static void flush() {
+            for (int i = 0; i < SLOTS; i++) summarize(i, System.nanoTime());
+        }
+
+        /**
+         * Removes every limit, after a {@link #flush()}.
+         * */
+        public static synchronized void reset() {
+            global = null;
+            limits = new Limit[values().length];
+            update();
+            flush();
+            for (int i = 0; i < SLOTS; i++) {
+                INTS.setVolatile(hashes, i, 0);
+                LONGS.setVolatile(arrivals, i, 0L);
+            }
+        }
+
+        private static void update() {
+            boolean next = global != null;
+            for (Limit limit : limits) next |= limit != null;
+            if (next && !hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(RateLimit::flush, "Printer.RateLimit-flush"));
+                hooked = true;
+            }
+            active = next;
+            Filter.update();
+        }
+
+        /**
+         * @return true if the print of {@code color} with the given {@code TAG} (nullable) is admitted.
+         * */
+        static boolean acquire(Printer color, String TAG) {
+            final Limit limit = limits[color.ordinal()] != null ? limits[color.ordinal()] : global;
+            if (limit == null) return true;
+            final Object owner;
+            int h;
+            if (TAG != null && key == Key.tag) {
+                owner = TAG;
+                h = TAG.hashCode();
+            } else {
+                StackWalker.StackFrame frame = Stacks.WALKER.walk(Stacks.caller);
+                if (frame == null) return true;
+                owner = frame;
+                h = (System.identityHashCode(frame.getDeclaringClass()) * 31 + frame.getMethodName().hashCode()) * 31 + frame.getByteCodeIndex();
+            }
+            h = h * 31 + color.ordinal();
+            if (h == 0) h = 1;
+            final long now = System.nanoTime();
+            final int slot = slotOf(h, color, owner, now);
+
+            long arrival, next;
+            do {
+                arrival = (long) LONGS.getVolatile(arrivals, slot);
+                // 0 is an empty bucket.
+                next = (arrival == 0 || arrival - now < 0 ? now : arrival) + limit.interval;
+                if (next - now > limit.tolerance) {
+                    if ((long) LONGS.getAndAdd(suppressed, slot, 1L) == 0) LONGS.setVolatile(since, slot, now);
+                    if (Metrics.enabled) Metrics.rateLimited();
+                    return false;
+                }
+            } while (!LONGS.compareAndSet(arrivals, slot, arrival, next));
+            summarize(slot, now);
+            return true;
+        }
+
+        /**
+         * @return the bucket of {@code h}, claiming one of the {@value PROBES} buckets after its home if it has none.
+         * */
+        private static int slotOf(int h, Printer color, Object key, long now) {
+            final int home = (h ^ (h >>> 16)) & (SLOTS - 1);
+            for (;;) {
+                int victim = -1, victimHash = 0;
+                long earliest = 0;
+                for (int i = 0; i < PROBES; i++) {
+                    final int slot = (home + i) & (SLOTS - 1);
+                    final int current = (int) INTS.getVolatile(hashes, slot);
+                    if (current == h) return slot;
+                    // an empty bucket was found already.
+                    if (victim >= 0 && victimHash == 0) continue;
+                    if (current == 0) {
+                        victim = slot;
+                        victimHash = 0;
+                    } else {
+                        final long arrival = (long) LONGS.getVolatile(arrivals, slot);
+                        if (victim < 0 || arrival - earliest < 0) {
+                            victim = slot;
+                            victimHash = current;
+                            earliest = arrival;
+                        }
                     }
                 }
+                // The arrival time of the victim is kept, the new key is admitted only as far as the evicted one would be.
+                summarize(victim, now);
+                if (INTS.compareAndSet(hashes, victim, victimHash, h)) {
+                    // only the winner names the bucket, summaries in between find the previous owner, or none.
+                    OWNERS.setVolatile(owners, victim, new Owner(color, key));
+                    return victim;
+                }
             }
         }
+
+        private static void summarize(int slot, long now) {
+            if ((long) LONGS.getVolatile(suppressed, slot) == 0) return;
+            final long count = (long) LONGS.getAndSet(suppressed, slot, 0L);
+            if (count == 0) return;
+            final Owner owner = (Owner) OWNERS.getVolatile(owners, slot);
+            if (owner == null) return;
+            final long nanos = now - (long) LONGS.getVolatile(since, slot);
+            owner.color.printText(owner + ": repeated " + count + " times in " + Chrono.formatNanos(Chrono.Format.adaptive, Math.max(0, nanos)));
+        }
     }
 
+    private static final PrintStream nonFlushed = System.out, flushed = new PrintStream(System.out, true);
+
     /**
-     * File Editor for the given formats:
-     * <ul>
-     *     <li>
-     *         {@link #HTML},
-     *     </li>
-     *     <li>
-     *         {@link #TXT},
-     *     </li>
-     *     <li>
-     *         {@link #XML},
-     *     </li>
-     * </ul>
-     * <p> With methods such as:
-     * <ul>
-     *     <li>{@link #editLine(String, String, Line...)}</li>
-     * </ul>
+     * Sets the default {@link System#out} {@link PrintStream} to {@link PrintStream#PrintStream(OutputStream, boolean)}.
+     * <p> Where: {@code autoflush} boolean = true.
+     * @see PrintWriter#PrintWriter(java.io.Writer, boolean)
      * */
-    public enum Editor {
-        HTML(".html"),
-        TXT(".txt"),
-        XML(".xml");
+    public static boolean setAutoFlush(boolean autoFlush) {
+        if ((flushed == System.out) == autoFlush) return false;
+        System.setOut(autoFlush ? flushed : nonFlushed);
+        return true;
+    }
 
-        private final String extension;
+    /**
+     * The {@link Async.Pipeline} currently in use, {@code null} when printing synchronously.
+     * */
+    private static volatile Async.Pipeline pipeline;
 
-        Editor(String extension) {
-            this.extension = extension;
+    /**
+     * Single exit point of every printed line.
+     * <p> Will write directly to the {@link Sink} OR enqueue the line into the {@link Async} pipeline when enabled.
+     * */
+    static void emit(String line) {
+        Async.Pipeline p = pipeline;
+        if (p == null || !p.offer(line)) {
+            byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            write(bytes, 0, bytes.length);
         }
+    }
 
-        public String getExtension() {
-            return extension;
-        }
+    /**
+     * Variation of {@link #emit(String)} for an already encoded line (including its line separator).
+     * <p> When printing synchronously, the bytes are written without any intermediate copy or allocation.
+     * */
+    static void emit(Bytes line) {
+        Async.Pipeline p = pipeline;
+        if (p == null || !p.offer(line.toArray())) write(line.buf, 0, line.len);
+    }
 
-        /**
+    /**
+     * Writes into the {@link Sink}, accounting the time blocked in the {@link Metrics}.
+     * */
+    static void write(byte[] bytes, int offset, int length) {
+        final Sink s = sink;
+        if (!Metrics.enabled) {
+            s.write(bytes, offset, length);
+            return;
+        }
+        if (!Metrics.timing) {
+            s.write(bytes, offset, length);
+            Metrics.written(length);
+            return;
+        }
+        final long start = System.nanoTime();
+        s.write(bytes, offset, length);
+        Metrics.written(length, System.nanoTime() - start);
+    }
+
+    /**
+     * The {@link Sink} every line is written to.
+     * */
+    private static volatile Sink sink = Sink.stdout();
+    /**
+     * {@link Sink#colors()} of the current {@link #sink}.
+     * */
+    private static volatile boolean sink_colors = true;
+    private static boolean sink_hooked;
+    private static final ReentrantLock sink_lock = new ReentrantLock();
+
+    /**
+     * Sets the destination of every {@link Printer} and {@link Chrono} line.
+     * <p> If the {@link Async} mode is enabled, the pending lines are flushed into the previous {@link Sink} first.
+     * <p> A shutdown hook is registered on the first call, that will close the {@link Sink} in place at exit,
+     * so that buffered lines are not lost.
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.setSink(Printer.Sink.rolling(Path.of("logs"), "debug", 16 << 20, 4));
+     * }</pre>
+     * @return the previous {@link Sink}, flushed but not closed.
+     * */
+    public static Sink setSink(Sink next) {
+        if (next == null) throw new NullPointerException("sink");
+        sink_lock.lock();
+        try {
+            if (!sink_hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    RateLimit.flush();
+                    Async.disable();
+                    sink.close();
+                }, "Printer.Sink-shutdown"));
+                sink_hooked = true;
+            }
+            Async.flush();
+            Sink prev = sink;
+            sink_colors = next.colors();
+            sink = next;
+            prev.flush();
+            return prev;
+        } finally {
+            sink_lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current {@link Sink}, {@link Sink#stdout()} by default.
+     * */
+    public static Sink getSink() {return sink;}
+
+    /**
+     * @return true if ANSI color codes should be written into the current {@link Sink}.
+     * */
+    private static boolean colors() {return ansi_enabled && sink_colors;}
+
+    /**
+     * Destination of the encoded lines.
+     * <p> Implementations must be thread safe, {@link #write(byte[], int, int)} is called by every printing thread
+     * (or by the {@link Async} writer thread only, when enabled).
+     * <p> Since the printing threads may be virtual threads, implementations should guard their state with a
+     * {@link ReentrantLock} rather than a {@code synchronized} monitor, a virtual thread that blocks while holding a monitor
+     * pins its carrier thread. The shipped implementations do so.
+     * <p> Shipped implementations:
+     * <ul>
+     *     <li>
+     *         {@link #stdout()}
+     *     </li>
+     *     <li>
+     *         {@link #file(Path)}
+     *     </li>
+     *     <li>
+     *         {@link #rolling(Path, String, long, int)}
+     *     </li>
+     * </ul>
+     * @see #setSink(Sink)
+     * */
+    public interface Sink extends Closeable {
+
+        /**
+         * Writes one or more complete UTF-8 encoded lines, including their line separators.
+         * <p> Should not throw, since it is called by printing threads: the shipped implementations report I/O failures
+         * to {@link System#err}, and drop the lines written after {@link #close()}
+         * (e.g. by other shutdown hooks or daemon threads, once the {@link #setSink(Sink)} hook has run).
+         * */
+        void write(byte[] bytes, int offset, int length);
+
+        default void flush() {}
+
+        @Override
+        default void close() {flush();}
+
+        /**
+         * @return false if ANSI color codes should not be written into this sink.
+         * */
+        default boolean colors() {return true;}
+
+        /**
+         * @return the {@link Sink} that writes into the {@link System#out} in place at the moment of each write,
+         * so that {@link #setAutoFlush(boolean)} and {@link System#setOut(PrintStream)} keep working.
+         * <p> Writes are serialized by a {@link ReentrantLock} before reaching the {@link PrintStream},
+         * so its monitor is never contended by printing threads.
+         * */
+        static Sink stdout() {return StdOut.instance;}
+
+        /**
+         * Default implementation of {@link #file(Path, int, boolean)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code bufferSize} = 64 KiB
+         *     </li>
+         *     <li>
+         *         {@code append} = true
+         *     </li>
+         * </ul>
+         * */
+        static Sink file(Path path) throws IOException {return file(path, 1 << 16, true);}
+
+        /**
+         * @return a {@link Sink} that buffers lines into a direct {@link ByteBuffer}
+         * and writes them through a {@link FileChannel} every time the buffer fills up, or on {@link #flush()}.
+         * ANSI color codes are stripped.
+         * @param append if false the file is truncated.
+         * */
+        static Sink file(Path path, int bufferSize, boolean append) throws IOException {
+            if (bufferSize < 64) throw new IllegalArgumentException("bufferSize must be >= 64, was: " + bufferSize);
+            FileChannel channel = append
+                    ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new ChannelSink(new ChannelWriter(channel, bufferSize));
+        }
+
+        /**
+         * @return a {@link Sink} that writes into memory-mapped segments of {@code segmentSize} bytes,
+         * named {@code <name>-<sequence>.log} inside {@code directory}.
+         * <p> Writes are plain copies into the mapped segment, no system call is performed until the segment is full,
+         * then a new segment is mapped, and the oldest segments beyond {@code segments} are deleted.
+         * <p> Segments are truncated to their written size when rotated or on {@link #close()},
+         * while open, the unwritten tail of the current segment reads as zeros.
+         * ANSI color codes are stripped.
+         * @param segments the number of segments kept, including the current one.
+         * */
+        static Sink rolling(Path directory, String name, long segmentSize, int segments) throws IOException {
+            if (segmentSize < 64 || segmentSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("segmentSize must be in [64, " + Integer.MAX_VALUE + "], was: " + segmentSize);
+            }
+            if (segments < 1) throw new IllegalArgumentException("segments must be >= 1, was: " + segments);
+            return new RollingSink(directory, name, (int) segmentSize, segments);
+        }
+
+        /**
+         * Copies {@code bytes} into {@code to} without the ANSI escape sequences ({@code ESC [ ... final byte}).
+         * */
+        static void stripAnsi(byte[] bytes, int offset, int length, ByteSink to) {
+            final int end = offset + length;
+            int from = offset;
+            for (int i = offset; i < end; i++) {
+                if (bytes[i] != 0x1B) continue;
+                to.put(bytes, from, i - from);
+                int j = i + 1;
+                if (j < end && bytes[j] == '[') {
+                    j++;
+                    while (j < end && (bytes[j] < 0x40 || bytes[j] > 0x7E)) j++;
+                    if (j < end) j++;
+                }
+                from = j;
+                i = j - 1;
+            }
+            to.put(bytes, from, end - from);
+        }
+    }
+
+    static final class StdOut implements Sink {
+        static final StdOut instance = new StdOut();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private StdOut() {}
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            lock.lock();
+            try {
+                System.out.write(bytes, offset, length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() {
+            lock.lock();
+            try {
+                System.out.flush();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@link System#out} is never closed.
+         * */
+        @Override
+        public void close() {flush();}
+    }
+
+    static final class ChannelSink implements Sink {
+        private final ChannelWriter writer;
+        private boolean closed;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        ChannelSink(ChannelWriter writer) {this.writer = writer;}
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            lock.lock();
+            try {
+                if (!closed) Sink.stripAnsi(bytes, offset, length, writer);
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() {
+            lock.lock();
+            try {
+                if (!closed) writer.drain();
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean colors() {return false;}
+    }
+
+    static final class RollingSink implements Sink, ByteSink {
+        private final Path directory;
+        private final String name;
+        private final int segmentSize, segments;
+        private final ArrayDeque<Path> files = new ArrayDeque<>();
+        private FileChannel channel;
+        private ByteBuffer segment;
+        private long sequence;
+        private boolean closed;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        RollingSink(Path directory, String name, int segmentSize, int segments) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            this.name = name;
+            this.segmentSize = segmentSize;
+            this.segments = segments;
+            // Continues after the segments of a previous run, keeping at most `segments`.
+            try (Stream<Path> existing = Files.list(directory)) {
+                existing.filter(p -> sequenceOf(p) >= 0)
+                        .sorted(Comparator.comparingLong(this::sequenceOf))
+                        .forEach(files::add);
+            }
+            if (!files.isEmpty()) sequence = sequenceOf(files.getLast()) + 1;
+            roll();
+        }
+
+        private long sequenceOf(Path path) {
+            String file = path.getFileName().toString(), prefix = name + "-";
+            if (!file.startsWith(prefix) || !file.endsWith(".log")) return -1;
+            try {
+                return Long.parseLong(file.substring(prefix.length(), file.length() - 4));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * @return the segments in the order they were written, the last one is the current.
+         * */
+        List<Path> segments() {
+            lock.lock();
+            try {
+                return new ArrayList<>(files);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void roll() {
+            try {
+                seal();
+                Path next = directory.resolve(String.format("%s-%06d.log", name, sequence++));
+                channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                files.add(next);
+                while (files.size() > segments) Files.deleteIfExists(files.removeFirst());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Truncates the current segment to its written size.
+         * */
+        private void seal() throws IOException {
+            if (channel == null) return;
+            try {
+                channel.truncate(segment.position());
+            } catch (IOException ignored) {
+                // Some platforms do not allow truncating mapped files, the tail is left zeroed.
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            lock.lock();
+            try {
+                if (!closed) Sink.stripAnsi(bytes, offset, length, this);
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public RollingSink put(byte b) {
+            if (!segment.hasRemaining()) roll();
+            segment.put(b);
+            return this;
+        }
+
+        @Override
+        public RollingSink put(byte[] bytes) {return put(bytes, 0, bytes.length);}
+
+        @Override
+        public RollingSink put(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                if (!segment.hasRemaining()) roll();
+                int n = Math.min(length, segment.remaining());
+                segment.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+            return this;
+        }
+
+        @Override
+        public RollingSink utf8(CharSequence s, int begin, int end) {
+            return put(s.subSequence(begin, end).toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * The mapped segment is flushed by the OS, even if the process crashes.
+         * */
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                seal();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean colors() {return false;}
+    }
+
+    /**
+     * Flight recorder mode.
+     * <p> While {@link #isRecording()}, the prints of every {@link Printer} (that pass the {@link Filter}) and the laps and
+     * elapsed times of every {@link Chrono} are not formatted nor printed, instead each one is written as a fixed layout
+     * binary record into an off-heap ring buffer, striped by thread.
+     * When a stripe is full its oldest records are overwritten, so the rings always hold the latest events.
+     * <p> Record layout (48 bytes):
+     * <pre>{@code
+     * int64 sequence | int64 System.nanoTime() | int64 thread id | int64 payload (primitive bits)
+     * int32 tag id | int32 aux (chrono id, null flag) | int8 color | int8 kind | 6 bytes padding
+     * }</pre>
+     * <p> Messages, objects, {@link Supplier}s and {@link ToStringFunction}s are kept by reference alongside the record,
+     * and only turned into {@link String}s when dumped, so their state at dump time is the one printed.
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.Recorder.start();
+     * Printer.Recorder.dumpOnExit(Printer.Export.to_csv, "logs", "flight");
+     * ...
+     * Printer.Recorder.dump(Printer.Sink.stdout(), Duration.ofSeconds(10)); // the last 10 seconds
+     * }</pre>
+     * */
+    public static final class Recorder {
+        static final int SEQ = 0, TIME = 8, THREAD = 16, PAYLOAD = 24, TAG = 32, AUX = 36, COLOR = 40, KIND = 41, RECORD = 48;
+        static final byte MESSAGE = 0, OBJECT = 1, SUPPLIER = 2, FUNCTION = 3, LONG = 4, INT = 5, DOUBLE = 6, BOOLEAN = 7, INTEGER = 8, CHRONO = 9;
+
+        /**
+         * Default records per stripe used by {@link #start()}.
+         * */
+        public static final int DEFAULT_CAPACITY = 1 << 13;
+
+        /**
+         * Max number of distinct tags interned, further tags are recorded as {@code "?"}.
+         * */
+        static final int MAX_TAGS = 1 << 16;
+
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+        private static final VarHandle CURSORS = MethodHandles.arrayElementVarHandle(long[].class);
+        /**
+         * Cursors are 128 bytes apart, so that stripes do not share cache lines.
+         * */
+        private static final int PAD = 16;
+
+        static volatile boolean recording;
+        private static volatile Tape tape;
+
+        private static final ConcurrentHashMap<String, Integer> tag_ids = new ConcurrentHashMap<>();
+        private static volatile String[] tags = new String[64];
+        private static int tag_count;
+
+        private Recorder() {}
+
+        /**
+         * Default implementation of {@link #start(int)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code capacity} = {@link #DEFAULT_CAPACITY}
+         *     </li>
+         * </ul>
+         * */
+        public static boolean start() {return start(DEFAULT_CAPACITY);}
+
+        /**
+         * Starts recording into new rings, the memory used is {@code capacity * 48} bytes per stripe,
+         * with one stripe per 2 available processors, rounded to the next power of 2.
+         * @param capacity the number of records kept per stripe, will be rounded to the next power of 2.
+         * @return true if previous records were discarded.
+         * */
+        public static synchronized boolean start(int capacity) {
+            if (capacity < 2) throw new IllegalArgumentException("capacity must be >= 2, was: " + capacity);
+            boolean discarded = tape != null;
+            tape = new Tape(capacity);
+            recording = true;
+            return discarded;
+        }
+
+        /**
+         * Stops recording, the records are kept until the next {@link #start(int)} or {@link #clear()}.
+         * @return false if it was not recording.
+         * */
+        public static synchronized boolean stop() {
+            if (!recording) return false;
+            recording = false;
+            return true;
+        }
+
+        public static boolean isRecording() {return recording;}
+
+        /**
+         * Discards every record, and releases the rings if not recording.
+         * */
+        public static synchronized void clear() {
+            Tape t = tape;
+            if (t == null) return;
+            tape = recording ? new Tape(t.capacity) : null;
+        }
+
+        private static int tagId(String tag) {
+            if (tag == null) return -1;
+            Integer id = tag_ids.get(tag);
+            return id != null ? id : intern(tag);
+        }
+
+        private static synchronized int intern(String tag) {
+            Integer id = tag_ids.get(tag);
+            if (id != null) return id;
+            if (tag_count == MAX_TAGS) return -2;
+            String[] t = tags;
+            if (tag_count == t.length) t = Arrays.copyOf(t, t.length << 1);
+            t[tag_count] = tag;
+            tags = t;
+            tag_ids.put(tag, tag_count);
+            return tag_count++;
+        }
+
+        static void record(Printer color, byte kind, String tag, long payload) {
+            if (Metrics.enabled) Metrics.recorded();
+            Tape t = tape;
+            if (t != null) t.record(color, kind, tagId(tag), payload, 0, null, null);
+        }
+
+        static void record(Printer color, byte kind, String tag, Object ref) {
+            if (Metrics.enabled) Metrics.recorded();
+            Tape t = tape;
+            if (t != null) t.record(color, kind, tagId(tag), 0, 0, ref, null);
+        }
+
+        static void record(Printer color, byte kind, String tag, long payload, int aux, Object ref, Object ref2) {
+            if (Metrics.enabled) Metrics.recorded();
+            Tape t = tape;
+            if (t != null) t.record(color, kind, tagId(tag), payload, aux, ref, ref2);
+        }
+
+        /**
+         * Off-heap rings, one per stripe, and their on-heap reference slots.
+         * */
+        static final class Tape {
+            final int capacity, slotMask, stripeMask;
+            final ByteBuffer[] stripes;
+            final Object[][] refs;
+            final long[] cursors;
+            /**
+             * {@link System#nanoTime()} to epoch nanos.
+             * */
+            final long wallBase = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+            Tape(int capacity) {
+                this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+                this.slotMask = this.capacity - 1;
+                int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() / 2 - 1)) << 1;
+                this.stripeMask = stripes - 1;
+                this.stripes = new ByteBuffer[stripes];
+                this.refs = new Object[stripes][];
+                this.cursors = new long[stripes * PAD];
+                for (int i = 0; i < stripes; i++) {
+                    this.stripes[i] = ByteBuffer.allocateDirect(this.capacity * RECORD).order(ByteOrder.nativeOrder());
+                    this.refs[i] = new Object[this.capacity << 1];
+                }
+            }
+
+            @SuppressWarnings("deprecation")
+            void record(Printer color, byte kind, int tag, long payload, int aux, Object ref, Object ref2) {
+                final long thread = Thread.currentThread().getId(), time = System.nanoTime();
+                final int stripe = (int) (thread & stripeMask);
+                final long position = (long) CURSORS.getAndAdd(cursors, stripe * PAD, 1L);
+                final int slot = (int) (position & slotMask), at = slot * RECORD;
+                final ByteBuffer buffer = stripes[stripe];
+                // Seqlock: readers discard the record unless the sequence is the same before and after reading it.
+                LONGS.setOpaque(buffer, at + SEQ, 0L);
+                VarHandle.storeStoreFence();
+                buffer.putLong(at + TIME, time);
+                buffer.putLong(at + THREAD, thread);
+                buffer.putLong(at + PAYLOAD, payload);
+                buffer.putInt(at + TAG, tag);
+                buffer.putInt(at + AUX, aux);
+                buffer.put(at + COLOR, (byte) color.ordinal());
+                buffer.put(at + KIND, kind);
+                final Object[] r = refs[stripe];
+                r[slot << 1] = ref;
+                r[slot << 1 | 1] = ref2;
+                LONGS.setRelease(buffer, at + SEQ, position + 1);
+            }
+
+            /**
+             * @return the consistent records with a timestamp {@code >= since}, in chronological order.
+             * */
+            List<Event> events(long since) {
+                final Printer[] colors = values();
+                final String[] tags = Recorder.tags;
+                final List<Event> events = new ArrayList<>();
+                for (int stripe = 0; stripe < stripes.length; stripe++) {
+                    final ByteBuffer buffer = stripes[stripe];
+                    final Object[] r = refs[stripe];
+                    final long end = (long) CURSORS.getVolatile(cursors, stripe * PAD);
+                    for (long position = Math.max(0, end - capacity); position < end; position++) {
+                        final int slot = (int) (position & slotMask), at = slot * RECORD;
+                        if ((long) LONGS.getAcquire(buffer, at + SEQ) != position + 1) continue;
+                        long time = buffer.getLong(at + TIME);
+                        int tag = buffer.getInt(at + TAG);
+                        Event event = new Event(
+                                wallBase + time, buffer.getLong(at + THREAD), colors[buffer.get(at + COLOR)], buffer.get(at + KIND),
+                                tag == -1 ? null : tag == -2 ? "?" : tags[tag],
+                                buffer.getLong(at + PAYLOAD), buffer.getInt(at + AUX), r[slot << 1], r[slot << 1 | 1]
+                        );
+                        VarHandle.loadLoadFence();
+                        if ((long) LONGS.getOpaque(buffer, at + SEQ) != position + 1 || time < since) continue;
+                        events.add(event);
+                    }
+                }
+                events.sort(Comparator.comparingLong(Event::epochNanos));
+                return events;
+            }
+        }
+
+        /**
+         * A decoded record.
+         * */
+        record Event(long epochNanos, long thread, Printer color, byte kind, String tag, long payload, int aux, Object ref, Object ref2) {
+
+            @SuppressWarnings("unchecked")
+            String message() {
+                try {
+                    return switch (kind) {
+                        case MESSAGE, OBJECT -> String.valueOf(ref);
+                        case SUPPLIER -> ((Supplier<String>) ref).get();
+                        case FUNCTION -> ((ToStringFunction<Object>) ref2).asString(ref);
+                        case LONG -> tag == null ? "long = " + payload : Long.toString(payload);
+                        case INT -> (tag == null ? "long = " : "int = ") + (int) payload;
+                        case DOUBLE -> Double.toString(Double.longBitsToDouble(payload));
+                        case BOOLEAN -> Boolean.toString(payload != 0);
+                        case INTEGER -> "Integer = " + (aux != 0 ? "null" : Integer.toString((int) payload));
+                        case CHRONO -> ref + " at (chrono = " + aux + ")..." + Chrono.formatNanos((Chrono.NanoFormat) ref2, payload);
+                        default -> "?";
+                    };
+                } catch (RuntimeException e) {
+                    return "<" + e + ">";
+                }
+            }
+
+            String time() {return DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(0, epochNanos));}
+
+            String[] cells() {
+                return new String[]{time(), Long.toString(thread), color.name(), tag, message()};
+            }
+
+            String line() {
+                String message = message();
+                return time() + " [" + thread + "] " + color.name() + " " + (tag == null ? message : tag + ": " + message);
+            }
+        }
+
+        private static final String[] HEADERS = {"time", "thread", "color", "tag", "message"};
+
+        private static List<Event> events(Duration last) {
+            Tape t = tape;
+            if (t == null) return List.of();
+            return t.events(last == null ? Long.MIN_VALUE : System.nanoTime() - last.toNanos());
+        }
+
+        /**
+         * Default implementation of {@link #dump(Sink, Duration)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code last} = null (every record)
+         *     </li>
+         * </ul>
+         * */
+        public static int dump(Sink sink) {return dump(sink, null);}
+
+        /**
+         * Writes the records as text lines of format:
+         * <p> {@code <ISO instant> [<thread id>] <color> [TAG: ]<message>}
+         * @param last the time window to dump, null for every record.
+         * @return the number of events written.
+         * */
+        public static int dump(Sink sink, Duration last) {
+            List<Event> events = events(last);
+            Bytes bytes = new Bytes(256);
+            for (Event event : events) {
+                bytes.reset();
+                bytes.utf8(event.line()).newLine();
+                sink.write(bytes.buf, 0, bytes.len);
+            }
+            sink.flush();
+            return events.size();
+        }
+
+        /**
+         * Default implementation of {@link #dump(Export, String, String, Duration)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code last} = null (every record)
+         *     </li>
+         * </ul>
+         * */
+        public static void dump(Export format, String directory, String fileName) {dump(format, directory, fileName, null);}
+
+        /**
+         * Saves the records as rows of columns {@code time, thread, color, tag, message}, via {@link Export}.
+         * @param last the time window to dump, null for every record.
+         * */
+        public static void dump(Export format, String directory, String fileName, Duration last) {
+            format.save(directory, fileName, HEADERS, events(last).stream().map(Event::cells));
+        }
+
+        private static boolean hooked;
+
+        /**
+         * Dumps every record via {@link #dump(Export, String, String)} when the JVM shuts down,
+         * and into {@code <fileName>_crash} when a thread dies due to an uncaught exception
+         * (the previous default {@link Thread.UncaughtExceptionHandler} is still called).
+         * @return false if the hooks were already installed.
+         * */
+        public static synchronized boolean dumpOnExit(Export format, String directory, String fileName) {
+            if (hooked) return false;
+            hooked = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(format, directory, fileName), "Printer.Recorder-dump"));
+            final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+            Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+                dump(format, directory, fileName + "_crash");
+                if (previous != null) previous.uncaughtException(thread, e);
+                else {
+                    System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+                    e.printStackTrace();
+                }
+            });
+            return true;
+        }
+    }
+
+    /**
+     * @return a snapshot of the {@link Metrics} counters.
+     * */
+    public static Metrics.Snapshot metrics() {return Metrics.snapshot();}
+
+    /**
+     * Counters of the cost of the library, backed by {@link LongAdder}s so that concurrent updates do not contend.
+     * <p> Counted:
+     * <ul>
+     *     <li>
+     *         Prints per {@link Printer} color, and prints {@link Recorder recorded} instead.
+     *     </li>
+     *     <li>
+     *         Writes into the {@link Sink}, bytes written and, if {@link #timing(boolean)} is enabled, the time spent blocked in them.
+     *     </li>
+     *     <li>
+     *         Stack captures (see {@link #printStack(boolean)}, {@link #depthStack(int)}, {@link #thisStack()}) and their cost.
+     *     </li>
+     *     <li>
+     *         Lost CAS races (retries) in {@link Chrono#lap()}.
+     *     </li>
+     *     <li>
+     *         Prints suppressed by the {@link RateLimit}.
+     *     </li>
+     *     <li>
+     *         {@link Export} and {@link Editor} calls, with their rows (or edited lines), bytes and duration.
+     *     </li>
+     * </ul>
+     * <p> The counters are read via {@link Printer#metrics()}, or via JMX once {@link #registerMBean()} is called
+     * (or at startup with {@code -Dprinter.jmx=true}).
+     * <p> Counting is enabled by default, and can be disabled via {@link #enable(boolean)} or {@code -Dprinter.metrics=false}.
+     * <p> Timing the {@link Sink} writes is disabled by default, since it costs two {@link System#nanoTime()} calls per print,
+     * and can be enabled via {@link #timing(boolean)} or {@code -Dprinter.metrics.timing=true}.
+     * */
+    public static final class Metrics {
+        /**
+         * The {@link ObjectName} of the {@link MetricsMXBean}.
+         * */
+        public static final String OBJECT_NAME = "io.github.skylarkarms.printer:type=Metrics";
+
+        static volatile boolean enabled = !"false".equals(System.getProperty("printer.metrics"));
+        static volatile boolean timing = Boolean.getBoolean("printer.metrics.timing");
+
+        private static final LongAdder[] prints = new LongAdder[values().length];
+        private static final LongAdder
+                recorded = new LongAdder(),
+                writes = new LongAdder(), bytes_written = new LongAdder(), write_nanos = new LongAdder(),
+                stack_captures = new LongAdder(), stack_nanos = new LongAdder(),
+                lap_retries = new LongAdder(), rate_limited = new LongAdder(),
+                export_calls = new LongAdder(), export_rows = new LongAdder(), export_bytes = new LongAdder(), export_nanos = new LongAdder(),
+                editor_calls = new LongAdder(), editor_lines = new LongAdder(),
+                editor_bytes_read = new LongAdder(), editor_bytes_written = new LongAdder(), editor_nanos = new LongAdder();
+
+        static {
+            for (int i = 0; i < prints.length; i++) prints[i] = new LongAdder();
+            if (Boolean.getBoolean("printer.jmx")) registerMBean();
+        }
+
+        private Metrics() {}
+
+        /**
+         * @return true if the value changed.
+         * */
+        public static boolean enable(boolean enable) {
+            if (enabled == enable) return false;
+            enabled = enable;
+            return true;
+        }
+
+        public static boolean isEnabled() {return enabled;}
+
+        /**
+         * Enables the measurement of the time spent blocked in {@link Sink} writes, while counting is {@link #isEnabled() enabled}.
+         * @return true if the value changed.
+         * */
+        public static boolean timing(boolean enable) {
+            if (timing == enable) return false;
+            timing = enable;
+            return true;
+        }
+
+        public static boolean isTiming() {return timing;}
+
+        static void print(Printer color) {prints[color.ordinal()].increment();}
+
+        static void recorded() {recorded.increment();}
+
+        static void written(int bytes) {
+            writes.increment();
+            bytes_written.add(bytes);
+        }
+
+        static void written(int bytes, long nanos) {
+            writes.increment();
+            bytes_written.add(bytes);
+            write_nanos.add(nanos);
+        }
+
+        static void stack(long nanos) {
+            stack_captures.increment();
+            stack_nanos.add(nanos);
+        }
+
+        static void lapRetries(int retries) {lap_retries.add(retries);}
+
+        static void rateLimited() {rate_limited.increment();}
+
+        static void exported(long rows, long bytes, long nanos) {
+            export_calls.increment();
+            export_rows.add(rows);
+            export_bytes.add(bytes);
+            export_nanos.add(nanos);
+        }
+
+        static void edited(long lines, long bytesRead, long bytesWritten, long nanos) {
+            editor_calls.increment();
+            editor_lines.add(lines);
+            editor_bytes_read.add(bytesRead);
+            editor_bytes_written.add(bytesWritten);
+            editor_nanos.add(nanos);
+        }
+
+        /**
+         * Resets every counter, concurrent updates may or may not be accounted.
+         * */
+        public static void reset() {
+            for (LongAdder adder : prints) adder.reset();
+            for (LongAdder adder : new LongAdder[]{
+                    recorded, writes, bytes_written, write_nanos, stack_captures, stack_nanos, lap_retries, rate_limited,
+                    export_calls, export_rows, export_bytes, export_nanos,
+                    editor_calls, editor_lines, editor_bytes_read, editor_bytes_written, editor_nanos
+            }) adder.reset();
+        }
+
+        /**
+         * Values of the counters at the moment of {@link #snapshot()}.
+         * <p> Each counter is read separately, so the snapshot is not atomic under concurrent updates.
+         * @param prints the prints per color.
+         * */
+        public record Snapshot(
+                Map<Printer, Long> prints, long recorded,
+                long writes, long bytesWritten, long writeNanos,
+                long stackCaptures, long stackNanos,
+                long lapRetries, long rateLimited, long asyncDropped,
+                long exportCalls, long exportRows, long exportBytes, long exportNanos,
+                long editorCalls, long editorLines, long editorBytesRead, long editorBytesWritten, long editorNanos
+        ) {
+            /**
+             * @return the prints of every color.
+             * */
+            public long printsTotal() {
+                long total = 0;
+                for (long l : prints.values()) total += l;
+                return total;
+            }
+        }
+
+        public static Snapshot snapshot() {
+            EnumMap<Printer, Long> perColor = new EnumMap<>(Printer.class);
+            for (Printer color : values()) perColor.put(color, prints[color.ordinal()].sum());
+            return new Snapshot(
+                    Collections.unmodifiableMap(perColor), recorded.sum(),
+                    writes.sum(), bytes_written.sum(), write_nanos.sum(),
+                    stack_captures.sum(), stack_nanos.sum(),
+                    lap_retries.sum(), rate_limited.sum(), Async.dropped(),
+                    export_calls.sum(), export_rows.sum(), export_bytes.sum(), export_nanos.sum(),
+                    editor_calls.sum(), editor_lines.sum(), editor_bytes_read.sum(), editor_bytes_written.sum(), editor_nanos.sum()
+            );
+        }
+
+        /**
+         * JMX view of the {@link Metrics}, registered as {@link #OBJECT_NAME}.
+         * */
+        public interface MetricsMXBean {
+            Map<String, Long> getPrints();
+
+            long getPrintsTotal();
+
+            long getRecorded();
+
+            long getWrites();
+
+            long getBytesWritten();
+
+            long getWriteNanos();
+
+            long getStackCaptures();
+
+            long getStackNanos();
+
+            long getLapRetries();
+
+            long getRateLimited();
+
+            long getAsyncDropped();
+
+            long getExportCalls();
+
+            long getExportRows();
+
+            long getExportBytes();
+
+            long getExportNanos();
+
+            long getEditorCalls();
+
+            long getEditorLines();
+
+            long getEditorBytesRead();
+
+            long getEditorBytesWritten();
+
+            long getEditorNanos();
+
+            boolean isEnabled();
+
+            void setEnabled(boolean enabled);
+
+            boolean isTiming();
+
+            void setTiming(boolean timing);
+
+            void reset();
+        }
+
+        private static final class MXBean implements MetricsMXBean {
+            @Override
+            public Map<String, Long> getPrints() {
+                Map<String, Long> res = new LinkedHashMap<>();
+                for (Printer color : values()) res.put(color.name(), prints[color.ordinal()].sum());
+                return res;
+            }
+
+            @Override
+            public long getPrintsTotal() {
+                long total = 0;
+                for (LongAdder adder : prints) total += adder.sum();
+                return total;
+            }
+
+            @Override
+            public long getRecorded() {return recorded.sum();}
+
+            @Override
+            public long getWrites() {return writes.sum();}
+
+            @Override
+            public long getBytesWritten() {return bytes_written.sum();}
+
+            @Override
+            public long getWriteNanos() {return write_nanos.sum();}
+
+            @Override
+            public long getStackCaptures() {return stack_captures.sum();}
+
+            @Override
+            public long getStackNanos() {return stack_nanos.sum();}
+
+            @Override
+            public long getLapRetries() {return lap_retries.sum();}
+
+            @Override
+            public long getRateLimited() {return rate_limited.sum();}
+
+            @Override
+            public long getAsyncDropped() {return Async.dropped();}
+
+            @Override
+            public long getExportCalls() {return export_calls.sum();}
+
+            @Override
+            public long getExportRows() {return export_rows.sum();}
+
+            @Override
+            public long getExportBytes() {return export_bytes.sum();}
+
+            @Override
+            public long getExportNanos() {return export_nanos.sum();}
+
+            @Override
+            public long getEditorCalls() {return editor_calls.sum();}
+
+            @Override
+            public long getEditorLines() {return editor_lines.sum();}
+
+            @Override
+            public long getEditorBytesRead() {return editor_bytes_read.sum();}
+
+            @Override
+            public long getEditorBytesWritten() {return editor_bytes_written.sum();}
+
+            @Override
+            public long getEditorNanos() {return editor_nanos.sum();}
+
+            @Override
+            public boolean isEnabled() {return enabled;}
+
+            @Override
+            public void setEnabled(boolean enabled) {enable(enabled);}
+
+            @Override
+            public boolean isTiming() {return timing;}
+
+            @Override
+            public void setTiming(boolean timing) {Metrics.timing(timing);}
+
+            @Override
+            public void reset() {Metrics.reset();}
+        }
+
+        /**
+         * Registers the {@link MetricsMXBean} into the platform {@link MBeanServer}.
+         * @return false if it was already registered.
+         * */
+        public static synchronized boolean registerMBean() {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) return false;
+                server.registerMBean(new MXBean(), name);
+                return true;
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @return false if it was not registered.
+         * */
+        public static synchronized boolean unregisterMBean() {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(name)) return false;
+                server.unregisterMBean(name);
+                return true;
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Opt-in asynchronous printing mode.
+     * <p> When enabled, every {@link Printer} and {@link Chrono} print is enqueued into a bounded lock-free multi-producer queue,
+     * a single daemon writer thread drains it in batches, encodes each batch into a reusable buffer and performs one
+     * {@link Sink#write(byte[], int, int)} per batch on the current {@link Sink}.
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.Async.enable(1 << 14, Printer.Async.Backpressure.drop_oldest);
+     * Printer.red.print(TAG, "Won't block on I/O");
+     * Printer.Async.flush();
+     * }</pre>
+     * @implNote
+     * <p> {@link #setAutoFlush(boolean)} keeps working in this mode, the writer will always target the {@link System#out} in place at the moment of each batch.
+     * <p> A shutdown hook is registered on the first {@link #enable(int, Backpressure)} so that pending lines are not lost on exit.
+     * <p> This is the preferred mode when printing from virtual threads: the callers only touch the lock-free queue
+     * (and park without holding any monitor under {@link Backpressure#block}), while the blocking I/O is performed by the
+     * writer, which is a platform thread.
+     * */
+    public static final class Async {
+
+        /**
+         * Defines what a producer does when the queue is full.
+         * */
+        public enum Backpressure {
+            /**
+             * The caller waits until the writer frees a slot.
+             * */
+            block,
+            /**
+             * The line being printed is discarded.
+             * */
+            drop_newest,
+            /**
+             * The oldest pending line is discarded to make room for the new one.
+             * */
+            drop_oldest
+        }
+
+        /**
+         * Default capacity used by {@link #enable()}.
+         * */
+        public static final int DEFAULT_CAPACITY = 1 << 13;
+
+        /**
+         * Max number of lines written per batch.
+         * */
+        static final int BATCH = 256;
+
+        private static final long PARK_NANOS = 50_000;
+
+        private static final ReentrantLock lock = new ReentrantLock();
+
+        private static boolean hooked;
+
+        private Async() {}
+
+        /**
+         * Default implementation of {@link #enable(int, Backpressure)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code capacity} = {@link #DEFAULT_CAPACITY}
+         *     </li>
+         *     <li>
+         *         {@link Backpressure} = {@link Backpressure#block}
+         *     </li>
+         * </ul>
+         * */
+        public static boolean enable() {
+            return enable(DEFAULT_CAPACITY, Backpressure.block);
+        }
+
+        /**
+         * Enables the asynchronous mode.
+         * <p> If the mode was already enabled, the previous pipeline will be flushed and replaced.
+         * @param capacity the max number of pending lines, will be rounded to the next power of 2.
+         * @param backpressure the policy to apply when the queue is full.
+         * @return true if a previous pipeline was replaced.
+         * */
+        public static boolean enable(int capacity, Backpressure backpressure) {
+            if (capacity < 2) throw new IllegalArgumentException("capacity must be >= 2, was: " + capacity);
+            if (backpressure == null) throw new NullPointerException("backpressure");
+            lock.lock();
+            try {
+                if (!hooked) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(Async::disable, "Printer.Async-shutdown"));
+                    hooked = true;
+                }
+                Pipeline prev = pipeline;
+                Pipeline next = new Pipeline(capacity, backpressure);
+                next.writer.start();
+                pipeline = next;
+                if (prev != null) {
+                    prev.stop();
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Disables the asynchronous mode, all pending lines will be written before this method returns.
+         * @return false if the mode was not enabled.
+         * */
+        public static boolean disable() {
+            lock.lock();
+            try {
+                Pipeline prev = pipeline;
+                if (prev == null) return false;
+                pipeline = null;
+                prev.stop();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if the asynchronous mode is enabled.
+         * */
+        public static boolean isEnabled() {return pipeline != null;}
+
+        /**
+         * Blocks until every line enqueued before this call has been written, then flushes the {@link Sink}.
+         * */
+        public static void flush() {
+            Pipeline p = pipeline;
+            if (p != null) p.flush();
+            else sink.flush();
+        }
+
+        /**
+         * @return the number of lines discarded by the {@link Backpressure} policy since the JVM started.
+         * */
+        public static long dropped() {return (long) DROPPED.getAcquire();}
+
+        private static volatile long dropped;
+        private static final VarHandle DROPPED;
+
+        static {
+            try {
+                DROPPED = MethodHandles.lookup().findStaticVarHandle(Async.class, "dropped", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private static void drop() {DROPPED.getAndAdd(1L);}
+
+        static final class Pipeline implements Runnable {
+            final Ring queue;
+            final Backpressure backpressure;
+            final Thread writer;
+            private volatile boolean running = true, parked;
+            /**
+             * The {@link Ring} head position up to which every line has been either written or dropped.
+             * */
+            private volatile long published;
+            private final Bytes bytes = new Bytes(1 << 13);
+            private final Object[] batch = new Object[BATCH];
+            /**
+             * Guards {@link #bytes} and {@link #batch}, the caller of {@link #flush()} or {@link #stop()} may drain concurrently with the writer.
+             * */
+            private final ReentrantLock draining = new ReentrantLock();
+
+            Pipeline(int capacity, Backpressure backpressure) {
+                this.queue = new Ring(capacity);
+                this.backpressure = backpressure;
+                this.writer = new Thread(this, "Printer.Async-writer");
+                this.writer.setDaemon(true);
+            }
+
+            /**
+             * @return false if the line could not be handed to the writer and should be written by the caller.
+             * */
+            boolean offer(Object line) {
+                if (!running) return false;
+                if (!queue.offer(line)) {
+                    switch (backpressure) {
+                        case drop_newest -> {
+                            drop();
+                            return true;
+                        }
+                        case drop_oldest -> {
+                            do {
+                                if (queue.poll() != null) drop();
+                            } while (!queue.offer(line));
+                        }
+                        case block -> {
+                            do {
+                                if (!running) return false;
+                                signal();
+                                LockSupport.parkNanos(PARK_NANOS);
+                            } while (!queue.offer(line));
+                        }
+                    }
+                }
+                signal();
+                // stop() may have performed its last drain after the check above, the line is written by its producer then.
+                if (!running) drain();
+                return true;
+            }
+
+            private void signal() {
+                if (parked) {
+                    parked = false;
+                    LockSupport.unpark(writer);
+                }
+            }
+
+            void flush() {
+                long target = queue.tailPosition();
+                while (published < target) {
+                    if (!writer.isAlive()) {
+                        drain();
+                        break;
+                    }
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                sink.flush();
+            }
+
+            void stop() {
+                running = false;
+                LockSupport.unpark(writer);
+                if (Thread.currentThread() != writer) {
+                    try {
+                        writer.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                // stragglers that read the pipeline before it was replaced,
+                // until the slots claimed by producers that saw it running are published.
+                while (!queue.isEmpty()) if (!drain()) Thread.onSpinWait();
+                sink.flush();
+            }
+
+            @Override
+            public void run() {
+                while (running) {
+                    if (!drain()) {
+                        parked = true;
+                        if (queue.isEmpty() && running) LockSupport.parkNanos(this, PARK_NANOS * 20);
+                        parked = false;
+                    }
+                }
+            }
+
+            /**
+             * Writes every pending line in batches.
+             * @return false if there was nothing to write.
+             * */
+            private boolean drain() {
+                draining.lock();
+                try {
+                    boolean wrote = false;
+                    int size;
+                    final Object[] batch = this.batch;
+                    while ((size = queue.drain(batch)) > 0) {
+                        final Bytes bytes = this.bytes;
+                        bytes.reset();
+                        for (int i = 0; i < size; i++) {
+                            if (batch[i] instanceof byte[] encoded) bytes.put(encoded);
+                            else if (batch[i] instanceof Template.Message message) message.renderLine(bytes);
+                            else bytes.utf8(String.valueOf(batch[i])).newLine();
+                            batch[i] = null;
+                        }
+                        write(bytes.buf, 0, bytes.len);
+                        published = queue.headPosition();
+                        wrote = true;
+                    }
+                    published = queue.headPosition();
+                    return wrote;
+                } finally {
+                    draining.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded lock-free multi-producer queue backed by a power of 2 array of sequenced slots.
+     * <p> Producers and consumers claim positions via CAS on {@link #tail} and {@link #head} respectively,
+     * the slot sequence signals whether the slot is ready to be read or written.
+     * */
+    static final class Ring {
+        private static final VarHandle SEQ = MethodHandles.arrayElementVarHandle(long[].class), HEAD, TAIL;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                HEAD = lookup.findVarHandle(Ring.class, "head", long.class);
+                TAIL = lookup.findVarHandle(Ring.class, "tail", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final Object[] items;
+        private final long[] sequences;
+        private final int mask;
+        private volatile long head, tail;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(capacity - 1) << 1;
+            items = new Object[size];
+            sequences = new long[size];
+            mask = size - 1;
+            for (int i = 0; i < size; i++) sequences[i] = i;
+        }
+
+        boolean offer(Object item) {
+            long pos = tail;
+            for (;;) {
+                int i = (int) pos & mask;
+                long dif = (long) SEQ.getAcquire(sequences, i) - pos;
+                if (dif == 0) {
+                    long witness = (long) TAIL.compareAndExchange(this, pos, pos + 1);
+                    if (witness == pos) {
+                        items[i] = item;
+                        SEQ.setRelease(sequences, i, pos + 1);
+                        return true;
+                    }
+                    pos = witness;
+                } else if (dif < 0) return false;
+                else pos = tail;
+            }
+        }
+
+        Object poll() {
+            long pos = head;
+            for (;;) {
+                int i = (int) pos & mask;
+                long dif = (long) SEQ.getAcquire(sequences, i) - (pos + 1);
+                if (dif == 0) {
+                    long witness = (long) HEAD.compareAndExchange(this, pos, pos + 1);
+                    if (witness == pos) {
+                        Object item = items[i];
+                        items[i] = null;
+                        SEQ.setRelease(sequences, i, pos + mask + 1);
+                        return item;
+                    }
+                    pos = witness;
+                } else if (dif < 0) return null;
+                else pos = head;
+            }
+        }
+
+        /**
+         * Polls up to {@code into.length} items.
+         * @return the number of items polled.
+         * */
+        int drain(Object[] into) {
+            int n = 0;
+            Object item;
+            while (n < into.length && (item = poll()) != null) into[n++] = item;
+            return n;
+        }
+
+        boolean isEmpty() {return head >= tail;}
+        long headPosition() {return head;}
+        long tailPosition() {return tail;}
+    }
+
+    /**
+     * Growable byte buffer with allocation-free UTF-8 encoding and primitive to digits conversion.
+     * */
+    static final class Bytes implements ByteSink {
+        private static final byte[]
+                NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII),
+                NULL = "null".getBytes(StandardCharsets.US_ASCII),
+                TRUE = "true".getBytes(StandardCharsets.US_ASCII),
+                FALSE = "false".getBytes(StandardCharsets.US_ASCII),
+                NAN = "NaN".getBytes(StandardCharsets.US_ASCII),
+                INFINITY = "Infinity".getBytes(StandardCharsets.US_ASCII),
+                MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+        /**
+         * Buffers grown past this size are released after use.
+         * */
+        static final int MAX_RETAINED = 1 << 16;
+
+        private static final long[] POW10 = new long[19];
+
+        static {
+            POW10[0] = 1;
+            for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+        }
+
+        private static final long MAX_EXACT = 1L << 53;
+
+        private final int initial;
+        byte[] buf;
+        int len;
+
+        Bytes(int capacity) {
+            initial = capacity;
+            buf = new byte[capacity];
+        }
+
+        void reset() {len = 0;}
+
+        /**
+         * Releases the backing array if it has grown past {@link #MAX_RETAINED}.
+         * */
+        void trim() {
+            if (buf.length > MAX_RETAINED) buf = new byte[initial];
+        }
+
+        void ensure(int extra) {
+            int min = len + extra;
+            if (min > buf.length) buf = Arrays.copyOf(buf, Math.max(min, buf.length << 1));
+        }
+
+        @Override
+        public Bytes put(byte b) {
+            ensure(1);
+            buf[len++] = b;
+            return this;
+        }
+
+        @Override
+        public Bytes put(byte[] bs) {
+            ensure(bs.length);
+            System.arraycopy(bs, 0, buf, len, bs.length);
+            len += bs.length;
+            return this;
+        }
+
+        @Override
+        public Bytes put(byte[] bs, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bs, offset, buf, len, length);
+            len += length;
+            return this;
+        }
+
+        Bytes newLine() {return put(NEW_LINE);}
+
+        Bytes bool(boolean b) {return put(b ? TRUE : FALSE);}
+
+        /**
+         * Writes the decimal digits of {@code l}, the same as {@link Long#toString(long)}.
+         * */
+        Bytes digits(long l) {
+            if (l == Long.MIN_VALUE) return put(MIN_LONG);
+            ensure(20);
+            if (l < 0) {
+                buf[len++] = '-';
+                l = -l;
+            }
+            int size = size(l);
+            int pos = len + size;
+            len = pos;
+            do {
+                buf[--pos] = (byte) ('0' + (l % 10));
+                l /= 10;
+            } while (l != 0);
+            return this;
+        }
+
+        static long pow10(int exponent) {return POW10[exponent];}
+
+        private static int size(long l) {
+            int size = 1;
+            while (size < 19 && l >= POW10[size]) size++;
+            return size;
+        }
+
+        /**
+         * Writes the digits of {@code d} in the same format as {@link Double#toString(double)} for values in the
+         * [10<sup>-3</sup>, 10<sup>7</sup>) range (and zeros), which are written without allocating.
+         * <p> Other values fall back to {@link Double#toString(double)}.
+         * */
+        Bytes digits(double d) {
+            if (Double.isNaN(d)) return put(NAN);
+            if (d == 0) {
+                ensure(4);
+                if (1 / d < 0) buf[len++] = '-';
+                buf[len++] = '0';
+                buf[len++] = '.';
+                buf[len++] = '0';
+                return this;
+            }
+            boolean negative = d < 0;
+            double abs = Math.abs(d);
+            if (Double.isInfinite(abs)) {
+                if (negative) put((byte) '-');
+                return put(INFINITY);
+            }
+            if (abs >= 1e-3 && abs < 1e7) {
+                int intDigits = abs < 1 ? 1 : size((long) abs);
+                for (int frac = 1, max = 17 - intDigits; frac <= max; frac++) {
+                    long scale = POW10[frac];
+                    long m = Math.round(abs * scale);
+                    if (m > MAX_EXACT) break;
+                    if ((double) m / scale == abs) {
+                        // trailing zeros beyond the first fractional digit are not displayed.
+                        while (frac > 1 && m % 10 == 0) {
+                            m /= 10;
+                            frac--;
+                            scale /= 10;
+                        }
+                        ensure(frac + 21);
+                        if (negative) buf[len++] = '-';
+                        digits(m / scale);
+                        buf[len++] = '.';
+                        long fraction = m % scale;
+                        int pos = len + frac;
+                        len = pos;
+                        for (int i = 0; i < frac; i++) {
+                            buf[--pos] = (byte) ('0' + (fraction % 10));
+                            fraction /= 10;
+                        }
+                        return this;
+                    }
+                }
+            }
+            return utf8(Double.toString(d));
+        }
+
+        /**
+         * UTF-8 encodes {@code s}, or writes {@code "null"}.
+         * */
+        Bytes utf8(CharSequence s) {
+            if (s == null) return put(NULL);
+            return utf8(s, 0, s.length());
+        }
+
+        @Override
+        public Bytes utf8(CharSequence s, int begin, int l) {
+            ensure((l - begin) * 3);
+            final byte[] buf = this.buf;
+            int pos = len;
+            for (int i = begin; i < l; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) buf[pos++] = (byte) c;
+                else if (c < 0x800) {
+                    buf[pos++] = (byte) (0xC0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < l && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) buf[pos++] = '?';
+                else {
+                    buf[pos++] = (byte) (0xE0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            len = pos;
+            return this;
+        }
+
+        byte[] toArray() {return Arrays.copyOf(buf, len);}
+
+        void writeTo(PrintStream out) {out.write(buf, 0, len);}
+    }
+
+    /**
+     * Wide {@link String} divisor.
+     * */
+    public static final String
+            divisor =
+            """
+
+                     || >>>>>>>> || ** \s
+                    ================\s
+                     || >>>>>>>> || ** \s""".indent(1);
+
+    private static final String space = "\s";
+
+    /**
+     * @return the {@code depth} frames found after skipping this method, its caller and the caller's caller,
+     * separated by {@code ", \n "}.
+     * */
+    public static String depthStack(int depth) {
+        final long start = Metrics.enabled ? System.nanoTime() : 0;
+        String res = Stacks.WALKER.walk(
+                frames -> frames.skip(3).limit(depth)
+                        .map(frame -> frame.toStackTraceElement() + ", \n ")
+                        .collect(Collectors.joining(space))
+        );
+        if (start != 0) Metrics.stack(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * @return the frame of the method that called the caller of this method.
+     * */
+    public static String thisStack() {
+        final long start = Metrics.enabled ? System.nanoTime() : 0;
+        String res = Stacks.WALKER.walk(Stacks.second).map(StackWalker.StackFrame::toStackTraceElement).map(String::valueOf).orElse("");
+        if (start != 0) Metrics.stack(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Stack capture engine used when {@link #printStack(boolean)} is set to true.
+     * <p> Built on {@link StackWalker}, walks only the frames needed, dropping every frame that belongs to {@link Printer}
+     * or its nested components ({@link Chrono}, {@link Async}...).
+     * <p> The captured frames are laid out with the same indexes as the ones obtained via {@link Thread#getStackTrace()}
+     * from inside a {@link #print(String)} call, so that the first caller frame is always found at index 3,
+     * which is the one displayed by the default {@link #range}.
+     * <p> When a single frame is walked (see {@link #frames(int)}), the rendered provenance is cached per call-site
+     * (class, method and bytecode index), so that repeated prints from the same line do not format it again.
+     * @implNote The cache is invalidated when either {@link #range} or {@link ToStringFunction.StackPrinter#params}
+     * (or its {@code prefix}) are reassigned, any other mutation to the {@link ToStringFunction.StackPrinter.Params}
+     * requires a call to {@link #clearCache()}.
+     * */
+    public static final class Stacks {
+        static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+        /**
+         * Index at which the first caller frame is placed.
+         * */
+        static final int LEAD = 3;
+
+        private static final StackTraceElement FILLER = new StackTraceElement(Printer.class.getName(), "print", "Printer.java", -1);
+
+        private static final int MAX_CACHED = 1 << 12;
+
+        private static volatile int frames = 1;
+
+        private static final ClassValue<Boolean> internal = new ClassValue<>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return type == Printer.class || type.getNestHost() == Printer.class;
+            }
+        };
+
+        static boolean isInternal(StackWalker.StackFrame frame) {return internal.get(frame.getDeclaringClass());}
+
+        static final Function<Stream<StackWalker.StackFrame>, StackWalker.StackFrame>
+                caller = frames -> frames.dropWhile(Stacks::isInternal).findFirst().orElse(null);
+
+        static final Function<Stream<StackWalker.StackFrame>, Optional<StackWalker.StackFrame>>
+                second = frames -> frames.skip(2).findFirst();
+
+        private record Site(Class<?> type, String method, int bci) {}
+
+        private record Rendered(ToStringFunction.Arrays.ViewRange range, ToStringFunction.StackPrinter.Params params, String prefix, String text) {
+            boolean isValid(ToStringFunction.Arrays.ViewRange range, ToStringFunction.StackPrinter.Params params) {
+                return this.range == range && this.params == params && this.prefix == params.prefix;
+            }
+        }
+
+        private static final ConcurrentHashMap<Site, Rendered> cache = new ConcurrentHashMap<>();
+
+        private Stacks() {}
+
+        /**
+         * Sets the number of caller frames walked per print.
+         * <p> The value should cover the highest index displayed by {@link #range}, minus 3.
+         * @param frames the number of frames, 1 by default.
+         * */
+        public static void frames(int frames) {
+            if (frames < 1) throw new IllegalArgumentException("frames must be >= 1, was: " + frames);
+            Stacks.frames = frames;
+        }
+
+        /**
+         * @return the number of caller frames walked per print.
+         * */
+        public static int frames() {return frames;}
+
+        /**
+         * Clears the call-site cache.
+         * */
+        public static void clearCache() {cache.clear();}
+
+        /**
+         * @return the rendered provenance of the first frame outside {@link Printer}.
+         * */
+        static String provenance() {
+            if (!Metrics.enabled) return capture();
+            final long start = System.nanoTime();
+            String res = capture();
+            Metrics.stack(System.nanoTime() - start);
+            return res;
+        }
+
+        private static String capture() {
+            final ToStringFunction.Arrays.ViewRange range = Printer.range;
+            final ToStringFunction.StackPrinter.Params params = ToStringFunction.StackPrinter.params;
+            final int frames = Stacks.frames;
+            if (frames == 1) {
+                StackWalker.StackFrame frame = WALKER.walk(caller);
+                if (frame == null) return "";
+                Site site = new Site(frame.getDeclaringClass(), frame.getMethodName(), frame.getByteCodeIndex());
+                Rendered rendered = cache.get(site);
+                if (rendered == null || !rendered.isValid(range, params)) {
+                    if (cache.size() >= MAX_CACHED) cache.clear();
+                    rendered = new Rendered(range, params, params.prefix, render(range, frame.toStackTraceElement()));
+                    cache.put(site, rendered);
+                }
+                return rendered.text;
+            }
+            StackTraceElement[] elements = WALKER.walk(
+                    stream -> stream.dropWhile(Stacks::isInternal).limit(frames)
+                            .map(StackWalker.StackFrame::toStackTraceElement)
+                            .toArray(StackTraceElement[]::new)
+            );
+            return elements.length == 0 ? "" : render(range, elements);
+        }
+
+        private static String render(ToStringFunction.Arrays.ViewRange range, StackTraceElement... callers) {
+            StackTraceElement[] elements = new StackTraceElement[LEAD + callers.length];
+            Arrays.fill(elements, 0, LEAD, FILLER);
+            System.arraycopy(callers, 0, elements, LEAD, callers.length);
+            return ToStringFunction.StackPrinter.PROV.toString(elements, range);
+        }
+    }
+
+    /**
+     * In-process sampling profiler.
+     * <p> A daemon thread takes the stack of every sampled thread that is {@link Thread.State#RUNNABLE} at each interval,
+     * and aggregates them into a call trie, so that hot frames and paths can be found where no external profiler
+     * can be attached.
+     * <p> Example usage:
+     * <pre>{@code
+     * Printer.Sampler sampler = new Printer.Sampler(Duration.ofMillis(5), Thread.currentThread());
+     * sampler.start();
+     * work();
+     * sampler.stop();
+     * sampler.printTop(Printer.yellow, 10);
+     * sampler.writeCollapsed(Path.of("work.collapsed")); // flamegraph.pl work.collapsed > work.svg
+     * }</pre>
+     * @implNote Stacks are taken via {@link Thread#getStackTrace()}, which brings the sampled thread to a safepoint,
+     * so samples are biased towards safepoints, and each one costs a few microseconds per sampled thread.
+     * <p> Frames are interned into {@code int} ids, and the trie is laid out in {@code int} arrays,
+     * where the children of each node are found via an open-addressing table keyed by (parent, frame).
+     * */
+    public static final class Sampler {
+        /**
+         * Number of innermost frames kept per sample by default.
+         * */
+        public static final int DEFAULT_DEPTH = 128;
+
+        private final long interval;
+        private final Thread[] threads;
+        private final ThreadGroup group;
+        private volatile int depth = DEFAULT_DEPTH;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Thread sampler;
+
+        // Guarded by lock.
+        private final HashMap<StackTraceElement, Integer> ids = new HashMap<>();
+        private final List<StackTraceElement> frames = new ArrayList<>();
+        private int[] frameSelf = new int[256], frameTotal = new int[256], frameSeen = new int[256];
+        private int nodes = 1;
+        private int[] nodeFrame = new int[1024], nodeSelf = new int[1024], nodeTotal = new int[1024],
+                firstChild = new int[1024], nextSibling = new int[1024];
+        private long[] childKeys = new long[2048];
+        private int[] childNodes = new int[2048];
+        private long samples;
+
+        /**
+         * Samples {@code threads} every {@code interval}.
+         * */
+        public Sampler(Duration interval, Thread... threads) {
+            this(interval, threads.clone(), null);
+        }
+
+        /**
+         * Samples the active threads of {@code group} (and its subgroups) every {@code interval}.
+         * */
+        public Sampler(Duration interval, ThreadGroup group) {
+            this(interval, null, group);
+        }
+
+        private Sampler(Duration interval, Thread[] threads, ThreadGroup group) {
+            long nanos = interval.toNanos();
+            if (nanos <= 0) throw new IllegalArgumentException("interval must be positive, was: " + interval);
+            if (group == null && threads == null) throw new NullPointerException("group");
+            this.interval = nanos;
+            this.threads = threads;
+            this.group = group;
+            nodeFrame[0] = -1;
+        }
+
+        /**
+         * Sets the number of innermost frames kept per sample, {@link #DEFAULT_DEPTH} by default.
+         * */
+        public void setDepth(int depth) {
+            if (depth < 1) throw new IllegalArgumentException("depth must be >= 1, was: " + depth);
+            this.depth = depth;
+        }
+
+        /**
+         * Starts the sampler daemon thread.
+         * @return false if it was already running.
+         * */
+        public synchronized boolean start() {
+            if (sampler != null) return false;
+            Thread t = new Thread(this::run, "Printer.Sampler");
+            t.setDaemon(true);
+            sampler = t;
+            t.start();
+            return true;
+        }
+
+        /**
+         * Stops the sampler daemon thread, and waits for its last sample.
+         * @return false if it was not running.
+         * */
+        public boolean stop() {
+            Thread t;
+            synchronized (this) {
+                t = sampler;
+                if (t == null) return false;
+                sampler = null;
+            }
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+
+        public boolean isRunning() {return sampler != null;}
+
+        /**
+         * @return the number of stacks aggregated.
+         * */
+        public long samples() {
+            lock.lock();
+            try {
+                return samples;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Discards every aggregated sample.
+         * */
+        public void reset() {
+            lock.lock();
+            try {
+                ids.clear();
+                frames.clear();
+                Arrays.fill(frameSelf, 0);
+                Arrays.fill(frameTotal, 0);
+                Arrays.fill(frameSeen, 0);
+                Arrays.fill(childKeys, 0);
+                Arrays.fill(childNodes, 0);
+                Arrays.fill(firstChild, 0, nodes, 0);
+                nodes = 1;
+                nodeSelf[0] = nodeTotal[0] = 0;
+                samples = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void run() {
+            final Thread self = Thread.currentThread();
+            Thread[] targets = threads != null ? threads : new Thread[16];
+            while (sampler == self) {
+                LockSupport.parkNanos(this, interval);
+                if (sampler != self) break;
+                int count;
+                if (threads != null) count = targets.length;
+                else {
+                    while ((count = group.enumerate(targets, true)) == targets.length) targets = new Thread[targets.length << 1];
+                }
+                for (int i = 0; i < count; i++) {
+                    Thread t = targets[i];
+                    if (t == self || t.getState() != Thread.State.RUNNABLE) continue;
+                    StackTraceElement[] stack = t.getStackTrace();
+                    if (stack.length != 0) add(stack);
+                }
+                if (threads == null) Arrays.fill(targets, 0, count, null);
+            }
+        }
+
+        /**
+         * Aggregates a stack, innermost frame first, as given by {@link Thread#getStackTrace()}.
+         * */
+        void add(StackTraceElement[] stack) {
+            final int length = Math.min(stack.length, depth);
+            lock.lock();
+            try {
+                final int stamp = (int) ++samples;
+                int node = 0;
+                nodeTotal[0]++;
+                for (int i = length - 1; i >= 0; i--) {
+                    final int frame = intern(stack[i]);
+                    node = child(node, frame);
+                    nodeTotal[node]++;
+                    // recursive frames are accounted once per sample.
+                    if (frameSeen[frame] != stamp) {
+                        frameSeen[frame] = stamp;
+                        frameTotal[frame]++;
+                    }
+                }
+                nodeSelf[node]++;
+                frameSelf[nodeFrame[node]]++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int intern(StackTraceElement element) {
+            Integer id = ids.get(element);
+            if (id != null) return id;
+            int next = frames.size();
+            frames.add(element);
+            ids.put(element, next);
+            if (next == frameSelf.length) {
+                frameSelf = Arrays.copyOf(frameSelf, next << 1);
+                frameTotal = Arrays.copyOf(frameTotal, next << 1);
+                frameSeen = Arrays.copyOf(frameSeen, next << 1);
+            }
+            return next;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & mask;
+        }
+
+        /**
+         * @return the child of {@code parent} for {@code frame}, created if absent.
+         * */
+        private int child(int parent, int frame) {
+            // node ids are never 0 for children, so a key is never 0 either.
+            final long key = ((long) parent << 32) | (frame + 1L);
+            final int mask = childKeys.length - 1;
+            int slot = slot(key, mask);
+            long k;
+            while ((k = childKeys[slot]) != 0) {
+                if (k == key) return childNodes[slot];
+                slot = (slot + 1) & mask;
+            }
+            final int node = nodes++;
+            if (node == nodeFrame.length) {
+                int capacity = node << 1;
+                nodeFrame = Arrays.copyOf(nodeFrame, capacity);
+                nodeSelf = Arrays.copyOf(nodeSelf, capacity);
+                nodeTotal = Arrays.copyOf(nodeTotal, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+            }
+            nodeFrame[node] = frame;
+            nodeSelf[node] = nodeTotal[node] = 0;
+            firstChild[node] = 0;
+            nextSibling[node] = firstChild[parent];
+            firstChild[parent] = node;
+            childKeys[slot] = key;
+            childNodes[slot] = node;
+            // load factor of 1/2.
+            if (nodes << 1 > childKeys.length) rehash();
+            return node;
+        }
+
+        private void rehash() {
+            final long[] keys = childKeys;
+            final int[] values = childNodes;
+            childKeys = new long[keys.length << 1];
+            childNodes = new int[keys.length << 1];
+            final int mask = childKeys.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) continue;
+                int slot = slot(keys[i], mask);
+                while (childKeys[slot] != 0) slot = (slot + 1) & mask;
+                childKeys[slot] = keys[i];
+                childNodes[slot] = values[i];
+            }
+        }
+
+        /**
+         * A frame with the samples in which it was the innermost one ({@code self}),
+         * and the samples in which it was present ({@code total}).
+         * */
+        public record Hot(StackTraceElement frame, int self, int total) {}
+
+        /**
+         * @return the {@code n} frames with the most {@link Hot#self()} samples, in descending order.
+         * */
+        public List<Hot> top(int n) {
+            lock.lock();
+            try {
+                Integer[] order = new Integer[frames.size()];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                final int[] self = frameSelf, total = frameTotal;
+                Arrays.sort(order, (a, b) -> self[a] != self[b] ? Integer.compare(self[b], self[a]) : Integer.compare(total[b], total[a]));
+                List<Hot> res = new ArrayList<>(Math.min(n, order.length));
+                for (int i = 0; i < order.length && res.size() < n; i++) {
+                    int f = order[i];
+                    if (self[f] == 0) break;
+                    res.add(new Hot(frames.get(f), self[f], total[f]));
+                }
+                return res;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Prints the {@link #top(int)} {@code n} frames with their share of the samples.
+         * */
+        public void printTop(Printer color, int n) {
+            if (!color.emits(null)) return;
+            final long samples = samples();
+            StringBuilder sb = new StringBuilder("Sampler report, ").append(samples).append(" samples...");
+            for (Hot hot : top(n)) {
+                sb.append("\n    ");
+                percent(sb, hot.self, samples).append(" self, ");
+                percent(sb, hot.total, samples).append(" total (").append(hot.self).append('/').append(hot.total).append(") at ")
+                        .append(hot.frame);
+            }
+            color.print(sb.toString());
+        }
+
+        private static StringBuilder percent(StringBuilder sb, long count, long samples) {
+            long tenths = samples == 0 ? 0 : count * 1000 / samples;
+            return sb.append(tenths / 10).append('.').append(tenths % 10).append('%');
+        }
+
+        /**
+         * Writes every aggregated path in the collapsed-stack format read by flame graph tools,
+         * one line per path: its frames from the outermost, separated by {@code ;}, followed by its samples, e.g.:
+         * <pre>{@code
+         * Main.main:12;Main.work:40;Main.parse:88 1532
+         * }</pre>
+         * */
+        public void writeCollapsed(Path file) throws IOException {
+            lock.lock();
+            try (ChannelWriter writer = new ChannelWriter(file, 1 << 16)) {
+                final byte[][] names = new byte[frames.size()][];
+                int[] path = new int[64], next = new int[64];
+                int d = 0;
+                next[0] = firstChild[0];
+                final Bytes line = new Bytes(256);
+                // iterative depth-first walk, path[0..d) holds the nodes of the current path.
+                while (d >= 0) {
+                    int node = next[d];
+                    if (node == 0) {
+                        d--;
+                        continue;
+                    }
+                    next[d] = nextSibling[node];
+                    if (d + 1 == path.length) {
+                        path = Arrays.copyOf(path, path.length << 1);
+                        next = Arrays.copyOf(next, next.length << 1);
+                    }
+                    path[d] = node;
+                    if (nodeSelf[node] != 0) {
+                        line.reset();
+                        for (int i = 0; i <= d; i++) {
+                            if (i != 0) line.put((byte) ';');
+                            int frame = nodeFrame[path[i]];
+                            byte[] name = names[frame];
+                            if (name == null) names[frame] = name = collapsed(frames.get(frame));
+                            line.put(name);
+                        }
+                        line.put((byte) ' ').digits(nodeSelf[node]).put((byte) '\n');
+                        writer.put(line.buf, 0, line.len);
+                    }
+                    next[++d] = firstChild[node];
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static byte[] collapsed(StackTraceElement frame) {
+            String name = frame.getClassName() + '.' + frame.getMethodName();
+            if (frame.getLineNumber() >= 0) name += ":" + frame.getLineNumber();
+            // ';' and ' ' are separators of the format.
+            return name.replace(';', ':').replace(' ', '_').getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Component that helps is the measure of nanos via
+     * atomic CAS-sing.
+     * */
+    public static final class Chrono {
+        private static final AtomicInteger ids = new AtomicInteger();
+        private volatile long begin;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long last;
+        private final NanoFormat format;
+        private final Printer color;
+        private final int chronoId = ids.getAndIncrement();
+
+
+        private static final VarHandle VAR_HANDLE;
+
+        static {
+            try {
+                VAR_HANDLE = MethodHandles.lookup().findVarHandle(Chrono.class, "last", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private boolean compareAndSet(long prev, long next) {
+            return VAR_HANDLE.compareAndSet(this, prev, next);
+        }
+
+        /**
+         * Per-thread reusable text buffers.
+         * */
+        private static final ThreadLocal<StringBuilder> texts = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+        static StringBuilder text() {
+            StringBuilder text = texts.get();
+            if (text.capacity() > Bytes.MAX_RETAINED) {
+                text = new StringBuilder(128);
+                texts.set(text);
+            }
+            text.setLength(0);
+            return text;
+        }
+
+        private void print(
+                String prefix, long toFormat
+        ) {
+            if (!color.emits(null)) return;
+            if (Recorder.recording) {
+                Recorder.record(color, Recorder.CHRONO, null, toFormat, chronoId, prefix, format);
+                return;
+            }
+            StringBuilder text = text().append(prefix).append(" at (chrono = ").append(chronoId).append(")...");
+            format.format(toFormat, text);
+            color.printText(text);
+        }
+
+        /**
+         * Prints the elapsed time since a {@link #start()} was called.
+         * */
+        public void elapsed() {
+            long elapsed = System.nanoTime() - begin;
+            if (Trace.session != null) Trace.event(Trace.ELAPSED, begin, elapsed, chronoId, color);
+            print("Elapsed", elapsed);
+        }
+
+        /**
+         * @return the nano long values since a {@link #start()} was called.
+         * */
+        public long elapsedNanos() {
+            long res = System.nanoTime() - begin;
+            assert begin != 0 : "Must have called 'start()' or 'silentStart()' first.";
+            return res;
+        }
+
+        /**
+         * Prints the time passed since last time this method was called
+         * OR since a {@link #start()} was first called.
+         * <p> The operation is performed atomically, concurrent laps will retry until each one of them is accounted for.
+         * <p> While {@link #isRecording()}, the lap is recorded into the {@link Histogram} instead of printed.
+         * */
+        public void lap() {
+            assert last != 0 : "Must have called .start()";
+            long prev, now;
+            int retries = -1;
+            do {
+                retries++;
+                prev = last;
+                now = System.nanoTime();
+            } while (!compareAndSet(prev, now));
+            if (retries != 0 && Metrics.enabled) Metrics.lapRetries(retries);
+            long lap = now - prev;
+            if (Trace.session != null) Trace.event(Trace.LAP, prev, lap, chronoId, color);
+            Histogram h = histogram;
+            if (h != null) h.record(lap);
+            else print(
+                    "Lapsed", lap);
+        }
+
+        /**
+         * Lock based version of {@link #lap()}
+         * <p> Only the lap is measured while holding the lock, the lap is traced, recorded or printed after releasing it,
+         * so concurrent laps may be printed out of order.
+         * */
+        public void syncLap() {
+            long prev, now;
+            lock.lock();
+            try {
+                prev = last;
+                now = System.nanoTime();
+                last = now;
+            } finally {
+                lock.unlock();
+            }
+            long lap = now - prev;
+            if (Trace.session != null) Trace.event(Trace.SYNC_LAP, prev, lap, chronoId, color);
+            Histogram h = histogram;
+            if (h != null) h.record(lap);
+            else print(
+                    "Sync lapsed", lap);
+        }
+
+        private volatile Histogram histogram;
+
+        /**
+         * Enables or disables the recording mode.
+         * <p> While recording, {@link #lap()} and {@link #syncLap()} will record their samples into a {@link Histogram}
+         * instead of printing them, see {@link #report()}.
+         * <p> Disabling the mode discards the recorded samples.
+         * @return true if the mode changed.
+         * */
+        public boolean recording(boolean recording) {
+            lock.lock();
+            try {
+                if ((histogram != null) == recording) return false;
+                histogram = recording ? new Histogram() : null;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if this {@link Chrono} is recording samples instead of printing them.
+         * */
+        public boolean isRecording() {return histogram != null;}
+
+        private Histogram histogram() {
+            Histogram h = histogram;
+            if (h == null) {
+                recording(true);
+                h = histogram;
+            }
+            return h;
+        }
+
+        /**
+         * Records the time elapsed since {@link #start()} was called.
+         * <p> Enables the recording mode if it was not enabled.
+         * */
+        public void record() {
+            long elapsed = System.nanoTime() - begin;
+            assert begin != 0 : "Must have called 'start()' or 'silentStart()' first.";
+            if (Trace.session != null) Trace.event(Trace.RECORD, begin, elapsed, chronoId, color);
+            histogram().record(elapsed);
+        }
+
+        /**
+         * Records a sample of {@code nanos}.
+         * <p> Enables the recording mode if it was not enabled.
+         * */
+        public void record(long nanos) {
+            if (Trace.session != null) Trace.event(Trace.RECORD, System.nanoTime() - nanos, nanos, chronoId, color);
+            histogram().record(nanos);
+        }
+
+        /**
+         * @return the statistics of the recorded samples, {@code null} if not {@link #isRecording()}.
+         * */
+        public Histogram.Stats stats() {
+            Histogram h = histogram;
+            return h == null ? null : h.stats();
+        }
+
+        /**
+         * Prints the count, min, max, mean, p50, p90, p99 and p99.9 of the recorded samples with this {@link Chrono}'s color and {@link Format}.
+         * @return the printed {@link Histogram.Stats}, {@code null} if not {@link #isRecording()}.
+         * */
+        public Histogram.Stats report() {
+            Histogram.Stats stats = stats();
+            if (stats != null && color.emits(null)) {
+                color.printText(stats.appendTo(text().append("Report at (chrono = ").append(chronoId).append(")..."), format));
+            }
+            return stats;
+        }
+
+        /**
+         * Lock-free, log-bucketed latency histogram of {@code long} counters.
+         * <p> Values are bucketed HDR-style: values lower than {@code 2 * }{@link #SUB_BUCKETS} get an exact bucket,
+         * every following power of 2 is split into {@link #SUB_BUCKETS} linear sub-buckets,
+         * bounding the relative error to {@code 1/}{@link #SUB_BUCKETS}.
+         * <p> Counters are striped by thread, so that concurrent recorders rarely contend on the same cache lines,
+         * stripes are merged on {@link #stats()}.
+         * */
+        public static final class Histogram {
+            private static final int SUB_BITS = 5;
+            static final int SUB_BUCKETS = 1 << SUB_BITS;
+            private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+            private static final int COUNT = BUCKETS, SUM = BUCKETS + 1, MIN = BUCKETS + 2, MAX = BUCKETS + 3;
+            private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+            private static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+            private final long[][] stripes = new long[STRIPES][];
+
+            public Histogram() {
+                for (int i = 0; i < STRIPES; i++) stripes[i] = newStripe();
+            }
+
+            private static long[] newStripe() {
+                long[] stripe = new long[BUCKETS + 4];
+                stripe[MIN] = Long.MAX_VALUE;
+                return stripe;
+            }
+
+            static int indexOf(long value) {
+                int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+                return (shift << SUB_BITS) + (int) (value >>> shift);
+            }
+
+            /**
+             * @return the highest value that falls into the bucket at {@code index}.
+             * */
+            static long highestOf(int index) {
+                if (index < 2 * SUB_BUCKETS) return index;
+                int shift = (index >> SUB_BITS) - 1;
+                long sub = index - ((long) shift << SUB_BITS);
+                return ((sub + 1) << shift) - 1;
+            }
+
+            private long[] stripe() {
+                long id = Thread.currentThread().getId();
+                return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1)];
+            }
+
+            /**
+             * Records a sample, negative values are recorded as 0.
+             * */
+            public void record(long value) {
+                if (value < 0) value = 0;
+                final long[] stripe = stripe();
+                LONGS.getAndAdd(stripe, indexOf(value), 1L);
+                LONGS.getAndAdd(stripe, COUNT, 1L);
+                LONGS.getAndAdd(stripe, SUM, value);
+                long cur;
+                while (value < (cur = (long) LONGS.getVolatile(stripe, MIN))) {
+                    if (LONGS.compareAndSet(stripe, MIN, cur, value)) break;
+                }
+                while (value > (cur = (long) LONGS.getVolatile(stripe, MAX))) {
+                    if (LONGS.compareAndSet(stripe, MAX, cur, value)) break;
+                }
+            }
+
+            /**
+             * Clears every recorded sample.
+             * <p> Samples recorded concurrently with this call may or may not be cleared.
+             * */
+            public void reset() {
+                for (long[] stripe : stripes) {
+                    for (int i = 0; i < stripe.length; i++) LONGS.setVolatile(stripe, i, i == MIN ? Long.MAX_VALUE : 0L);
+                }
+            }
+
+            /**
+             * @return the merged statistics of every stripe.
+             * */
+            public Stats stats() {
+                final long[] merged = new long[BUCKETS];
+                long count = 0, sum = 0, min = Long.MAX_VALUE, max = 0;
+                for (long[] stripe : stripes) {
+                    for (int i = 0; i < BUCKETS; i++) merged[i] += (long) LONGS.getVolatile(stripe, i);
+                    count += (long) LONGS.getVolatile(stripe, COUNT);
+                    sum += (long) LONGS.getVolatile(stripe, SUM);
+                    min = Math.min(min, (long) LONGS.getVolatile(stripe, MIN));
+                    max = Math.max(max, (long) LONGS.getVolatile(stripe, MAX));
+                }
+                if (count == 0) return new Stats(0, 0, 0, 0, 0, 0, 0, 0);
+                return new Stats(
+                        count, min, max, (double) sum / count,
+                        percentile(merged, count, min, max, 50),
+                        percentile(merged, count, min, max, 90),
+                        percentile(merged, count, min, max, 99),
+                        percentile(merged, count, min, max, 99.9)
+                );
+            }
+
+            private static long percentile(long[] merged, long count, long min, long max, double percentile) {
+                long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count)), seen = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    seen += merged[i];
+                    if (seen >= rank) return Math.max(min, Math.min(max, highestOf(i)));
+                }
+                return max;
+            }
+
+            /**
+             * The statistics of a {@link Histogram}, all values in nanos.
+             * */
+            public record Stats(long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+
+                StringBuilder appendTo(StringBuilder sb, NanoFormat format) {
+                    sb.append("count = ").append(count).append(", min = ");
+                    format.format(min, sb);
+                    sb.append(", max = ");
+                    format.format(max, sb);
+                    sb.append(", mean = ");
+                    format.format(Math.round(mean), sb);
+                    sb.append(", p50 = ");
+                    format.format(p50, sb);
+                    sb.append(", p90 = ");
+                    format.format(p90, sb);
+                    sb.append(", p99 = ");
+                    format.format(p99, sb);
+                    sb.append(", p99.9 = ");
+                    format.format(p999, sb);
+                    return sb;
+                }
+            }
+        }
+
+        /**
+         * Opens a {@link Span} named {@code name} nested in the span currently open in this thread (if any).
+         * <p> Example usage:
+         * <pre>{@code
+         * try (var s = Printer.Chrono.span("decode")) {
+         *     try (var p = Printer.Chrono.span("parse")) {
+         *         parse();
+         *     }
+         *     validate();
+         * }
+         * Printer.Chrono.Span.report(Printer.cyan);
+         * }</pre>
+         * @return the {@link Span} of the current thread, to be closed when the measured block ends.
+         * */
+        public static Span span(String name) {
+            return Span.local.get().open(name);
+        }
+
+        /**
+         * Per-thread stack of nested spans.
+         * <p> Each thread reuses a single {@link Span} object along with its stack arrays, so opening and closing spans
+         * does not allocate once each span path has been seen.
+         * <p> On {@link #close()} the total time and the self time (total minus the time spent in nested spans) are
+         * aggregated per span path across all threads, see {@link #report(Printer, NanoFormat)}.
+         * @implNote Spans must be closed in the reverse order in which they were opened (as try-with-resources does),
+         * and on the same thread that opened them.
+         * */
+        public static final class Span implements AutoCloseable {
+            static final ThreadLocal<Span> local = ThreadLocal.withInitial(Span::new);
+
+            private static volatile Node root = new Node("");
+
+            private Node[] nodes = new Node[16];
+            private long[] starts = new long[16], nested = new long[16];
+            private int depth = -1;
+
+            private Span() {}
+
+            Span open(String name) {
+                int d = depth + 1;
+                if (d == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, d << 1);
+                    starts = Arrays.copyOf(starts, d << 1);
+                    nested = Arrays.copyOf(nested, d << 1);
+                }
+                nodes[d] = (d == 0 ? root : nodes[d - 1]).child(name);
+                nested[d] = 0;
+                depth = d;
+                starts[d] = System.nanoTime();
+                return this;
+            }
+
+            /**
+             * Closes the innermost span opened by the current thread.
+             * */
+            @Override
+            public void close() {
+                long now = System.nanoTime();
+                int d = depth;
+                if (d < 0) throw new IllegalStateException("No span is open in this thread.");
+                long total = now - starts[d];
+                nodes[d].add(total, total - nested[d]);
+                if (Trace.session != null) Trace.event(Trace.SPAN, starts[d], total, -1, nodes[d].name);
+                nodes[d] = null;
+                depth = --d;
+                if (d >= 0) nested[d] += total;
+            }
+
+            /**
+             * Default implementation of {@link #report(Printer, NanoFormat)}
+             * <p> Where:
+             * <ul>
+             *     <li>
+             *         {@link Format} = {@link Format#full}
+             *     </li>
+             * </ul>
+             * */
+            public static void report(Printer color) {
+                report(color, Format.full);
+            }
+
+            /**
+             * Prints the aggregated call-tree of every span closed so far, children sorted by total time.
+             * */
+            public static void report(Printer color, NanoFormat format) {
+                if (!color.emits(null)) return;
+                StringBuilder sb = new StringBuilder("Spans report...");
+                List<Node> children = root.sorted();
+                for (Node child : children) child.appendTo(sb, format, 1);
+                color.print(sb.toString());
+            }
+
+            /**
+             * Discards every aggregated span.
+             * <p> Spans open while this method is called will be aggregated into the discarded tree.
+             * */
+            public static void reset() {
+                root = new Node("");
+            }
+
+            static final class Node {
+                final String name;
+                final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+                final LongAdder count = new LongAdder(), total = new LongAdder(), self = new LongAdder();
+
+                Node(String name) {this.name = name;}
+
+                Node child(String name) {
+                    Node node = children.get(name);
+                    return node != null ? node : children.computeIfAbsent(name, Node::new);
+                }
+
+                void add(long total, long self) {
+                    count.increment();
+                    this.total.add(total);
+                    this.self.add(self);
+                }
+
+                List<Node> sorted() {
+                    List<Node> sorted = new ArrayList<>(children.values());
+                    sorted.sort(Comparator.comparingLong((Node node) -> node.total.sum()).reversed());
+                    return sorted;
+                }
+
+                void appendTo(StringBuilder sb, NanoFormat format, int level) {
+                    long count = this.count.sum(), total = this.total.sum();
+                    sb.append('\n').append(" ".repeat(level)).append(name)
+                            .append(" >> count = ").append(count)
+                            .append(", total = ");
+                    format.format(total, sb);
+                    sb.append(", self = ");
+                    format.format(self.sum(), sb);
+                    sb.append(", mean = ");
+                    format.format(count == 0 ? 0 : total / count, sb);
+                    for (Node child : sorted()) child.appendTo(sb, format, level + 1);
+                }
+            }
+        }
+
+        /**
+         * Appends the representation of an amount of nanos to a {@link StringBuilder}, without any intermediate allocation.
+         * @see Format
+         * @see Format#register(String, NanoFormat)
+         * */
+        @FunctionalInterface
+        public interface NanoFormat {
+            /**
+             * Appends the representation of {@code nanos} into {@code into}.
+             * */
+            void format(long nanos, StringBuilder into);
+        }
+
+        /**
+         * Timeline of {@link Chrono} and {@link Span} events, streamed into a Chrome Trace Event Format JSON file,
+         * that can be loaded offline in Perfetto or {@code chrome://tracing}.
+         * <p> While tracing:
+         * <ul>
+         *     <li>
+         *         {@link #start()}, {@link #silentStart()} and {@link #startText()} record an instant event.
+         *     </li>
+         *     <li>
+         *         {@link #elapsed()}, {@link #lap()}, {@link #syncLap()}, {@link #record()} and {@link #record(long)}
+         *         record a complete event spanning the measured time.
+         *     </li>
+         *     <li>
+         *         Every closed {@link Span} records a complete event named after it.
+         *     </li>
+         * </ul>
+         * <p> Every event carries its categories: the {@code chronoId}, the {@link Printer} color and the thread name,
+         * e.g.: {@code "cat":"chrono=3,red,thread=main"}. Threads are also named via metadata events.
+         * <p> Example usage:
+         * <pre>{@code
+         * Printer.Chrono.Trace.start(Path.of("trace.json"));
+         * ...
+         * Printer.Chrono.Trace.stop();
+         * }</pre>
+         * @implNote Events are written into per-thread buffers of primitive arrays, without allocation nor contention.
+         * A full buffer is encoded into the file by its own thread, so the trace never needs to fit in memory,
+         * while {@link #flush()} and {@link #stop()} encode the pending events of every thread.
+         * <p> The buffers of terminated threads are encoded and dropped by {@link #flush()}, and whenever the number of buffers doubles,
+         * a few of them are kept to be reused by the next threads.
+         * <p> A shutdown hook stops the trace at exit, so that the file is always a complete JSON document.
+         * */
+        public static final class Trace {
+            static final byte START = 0, ELAPSED = 1, LAP = 2, SYNC_LAP = 3, RECORD = 4, SPAN = 5;
+
+            private static final byte[][] NAMES = {
+                    quoted("start"), quoted("elapsed"), quoted("lap"), quoted("sync lap"), quoted("record")
+            };
+
+            private static final byte[]
+                    HEADER = "{\"displayTimeUnit\":\"ns\",\"traceEvents\":[".getBytes(StandardCharsets.US_ASCII),
+                    TRAILER = "\n]}\n".getBytes(StandardCharsets.US_ASCII),
+                    FIRST = "\n".getBytes(StandardCharsets.US_ASCII),
+                    NEXT = ",\n".getBytes(StandardCharsets.US_ASCII),
+                    NAME = "{\"name\":".getBytes(StandardCharsets.US_ASCII),
+                    CAT_CHRONO = ",\"cat\":\"chrono=".getBytes(StandardCharsets.US_ASCII),
+                    CAT_SPAN = ",\"cat\":\"span".getBytes(StandardCharsets.US_ASCII),
+                    INSTANT = ",\"ph\":\"i\",\"s\":\"t\",\"ts\":".getBytes(StandardCharsets.US_ASCII),
+                    COMPLETE = ",\"ph\":\"X\",\"ts\":".getBytes(StandardCharsets.US_ASCII),
+                    DUR = ",\"dur\":".getBytes(StandardCharsets.US_ASCII),
+                    PID = ",\"pid\":".getBytes(StandardCharsets.US_ASCII),
+                    TID = ",\"tid\":".getBytes(StandardCharsets.US_ASCII),
+                    ARGS_CHRONO = ",\"args\":{\"chrono\":".getBytes(StandardCharsets.US_ASCII),
+                    THREAD_NAME = "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":".getBytes(StandardCharsets.US_ASCII),
+                    ARGS_NAME = ",\"args\":{\"name\":".getBytes(StandardCharsets.US_ASCII);
+
+            private static byte[] quoted(String s) {return ("\"" + s + "\"").getBytes(StandardCharsets.US_ASCII);}
+
+            static volatile Session session;
+            private static final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+            private static boolean hooked;
+
+            private Trace() {}
+
+            /**
+             * Default implementation of {@link #start(Path, int)}
+             * <p> Where:
+             * <ul>
+             *     <li>
+             *         {@code capacity} = 4096
+             *     </li>
+             * </ul>
+             * */
+            public static boolean start(Path file) throws IOException {return start(file, 1 << 12);}
+
+            /**
+             * Starts tracing into {@code file}, which is truncated.
+             * @param capacity the number of events buffered per thread before they are written.
+             * @return false if a trace was already in progress, in which case nothing changes.
+             * */
+            public static synchronized boolean start(Path file, int capacity) throws IOException {
+                if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1, was: " + capacity);
+                if (session != null) return false;
+                if (!hooked) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(Trace::stop, "Printer.Trace-stop"));
+                    hooked = true;
+                }
+                session = new Session(new ChannelWriter(file, 1 << 16), capacity);
+                return true;
+            }
+
+            /**
+             * @return true if a trace is in progress.
+             * */
+            public static boolean isTracing() {return session != null;}
+
+            /**
+             * Writes the pending events of every thread into the file.
+             * */
+            public static void flush() {
+                Session s = session;
+                if (s != null) s.flush(false);
+            }
+
+            /**
+             * Writes the pending events of every thread and completes the file.
+             * <p> Events recorded concurrently with this call may not be written.
+             * @return the number of events written, or -1 if no trace was in progress.
+             * */
+            public static long stop() {
+                Session s;
+                synchronized (Trace.class) {
+                    s = session;
+                    if (s == null) return -1;
+                    session = null;
+                }
+                s.flush(true);
+                return s.events;
+            }
+
+            /**
+             * @return the number of per-thread buffers held by the trace in progress.
+             * */
+            static int buffers() {
+                Session s = session;
+                if (s == null) return 0;
+                s.lock.lock();
+                try {
+                    return s.buffers.size();
+                } finally {
+                    s.lock.unlock();
+                }
+            }
+
+            static void event(byte kind, long time, long duration, int chronoId, Object ref) {
+                final Session s = session;
+                if (s == null) return;
+                Buffer b = buffers.get();
+                if (b == null || b.session != s) b = s.register();
+                b.add(kind, time, duration, chronoId, ref);
+            }
+
+            private static final class Buffer {
+                private static final VarHandle SIZE;
+
+                static {
+                    try {
+                        SIZE = MethodHandles.lookup().findVarHandle(Buffer.class, "size", int.class);
+                    } catch (ReflectiveOperationException e) {
+                        throw new ExceptionInInitializerError(e);
+                    }
+                }
+
+                final Session session;
+                final Thread owner;
+                final long tid;
+                /**
+                 * The JSON-escaped thread category, closing the {@code cat} string.
+                 * */
+                final byte[] thread;
+                final long[] times, durations;
+                final int[] chronos;
+                final byte[] kinds;
+                final Object[] refs;
+                /**
+                 * Published with release semantics by the owner thread.
+                 * */
+                private int size;
+                /**
+                 * Guarded by the {@link Session#lock}.
+                 * */
+                int flushed;
+
+                /**
+                 * @param recycled the cleared buffer of a terminated thread whose arrays are reused, nullable.
+                 * */
+                Buffer(Session session, Thread thread, Buffer recycled) {
+                    this.session = session;
+                    this.owner = thread;
+                    this.tid = thread.getId();
+                    Bytes category = new Bytes(64);
+                    Export.jsonString(category, ",thread=" + thread.getName().replace(',', ' '));
+                    // drops the opening quote, keeps the closing one.
+                    this.thread = Arrays.copyOfRange(category.buf, 1, category.len);
+                    if (recycled != null) {
+                        times = recycled.times;
+                        durations = recycled.durations;
+                        chronos = recycled.chronos;
+                        kinds = recycled.kinds;
+                        refs = recycled.refs;
+                    } else {
+                        final int capacity = session.capacity;
+                        times = new long[capacity];
+                        durations = new long[capacity];
+                        chronos = new int[capacity];
+                        kinds = new byte[capacity];
+                        refs = new Object[capacity];
+                    }
+                }
+
+                int size() {return (int) SIZE.getAcquire(this);}
+
+                void add(byte kind, long time, long duration, int chronoId, Object ref) {
+                    int i = size;
+                    if (i == times.length) {
+                        session.drain(this);
+                        i = 0;
+                    }
+                    times[i] = time;
+                    durations[i] = duration;
+                    chronos[i] = chronoId;
+                    kinds[i] = kind;
+                    refs[i] = ref;
+                    SIZE.setRelease(this, i + 1);
+                }
+
+                void clear() {
+                    Arrays.fill(refs, null);
+                    flushed = 0;
+                    SIZE.setRelease(this, 0);
+                }
+            }
+
+            private static final class Session {
+                /**
+                 * The maximum number of buffers of terminated threads kept for reuse.
+                 * */
+                static final int FREE = 8;
+                final ReentrantLock lock = new ReentrantLock();
+                final ChannelWriter writer;
+                final int capacity;
+                final long origin = System.nanoTime(), pid = ProcessHandle.current().pid();
+                final List<Buffer> buffers = new ArrayList<>();
+                final ArrayDeque<Buffer> free = new ArrayDeque<>();
+                final Bytes event = new Bytes(256);
+                boolean first = true, closed;
+                long events;
+                /**
+                 * The number of buffers at which the next {@link #register()} sweeps the terminated threads.
+                 * */
+                int sweepAt = FREE;
+
+                Session(ChannelWriter writer, int capacity) {
+                    this.writer = writer;
+                    this.capacity = capacity;
+                    writer.put(HEADER);
+                }
+
+                Buffer register() {
+                    final Thread thread = Thread.currentThread();
+                    Buffer b = null;
+                    lock.lock();
+                    try {
+                        if (buffers.size() >= sweepAt) {
+                            sweep();
+                            sweepAt = Math.max(FREE, buffers.size() * 2);
+                        }
+                        b = new Buffer(this, thread, free.poll());
+                        if (!closed) {
+                            buffers.add(b);
+                            Bytes e = begin().put(THREAD_NAME).digits(pid).put(TID).digits(b.tid).put(ARGS_NAME);
+                            Export.jsonString(e, thread.getName());
+                            write(e.put((byte) '}').put((byte) '}'));
+                        }
+                    } catch (UncheckedIOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (b == null) b = new Buffer(this, thread, null);
+                    Trace.buffers.set(b);
+                    return b;
+                }
+
+                /**
+                 * Encodes the pending events of the terminated threads, and drops their buffers, keeping up to {@value FREE} for reuse.
+                 * <p> A terminated thread no longer writes into its buffer, and its last writes are visible once {@link Thread#isAlive()} is false.
+                 * */
+                private void sweep() {
+                    int kept = 0;
+                    for (int i = 0; i < buffers.size(); i++) {
+                        final Buffer b = buffers.get(i);
+                        if (b.owner.isAlive()) {
+                            buffers.set(kept++, b);
+                            continue;
+                        }
+                        try {
+                            final int size = b.size();
+                            if (size > b.flushed) encode(b, size);
+                        } catch (UncheckedIOException e) {
+                            e.printStackTrace();
+                        }
+                        b.clear();
+                        if (free.size() < FREE) free.add(b);
+                    }
+                    buffers.subList(kept, buffers.size()).clear();
+                }
+
+                /**
+                 * Called by the owner of the full {@code buffer}.
+                 * */
+                void drain(Buffer buffer) {
+                    lock.lock();
+                    try {
+                        if (!closed) encode(buffer, buffer.size());
+                    } catch (UncheckedIOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        buffer.clear();
+                        lock.unlock();
+                    }
+                }
+
+                void flush(boolean close) {
+                    lock.lock();
+                    try {
+                        if (closed) return;
+                        sweep();
+                        for (Buffer b : buffers) {
+                            int size = b.size();
+                            // a buffer cleared in between is only read up to its new size.
+                            if (size > b.flushed) {
+                                encode(b, size);
+                                b.flushed = size;
+                            }
+                        }
+                        if (close) {
+                            closed = true;
+                            // threads still holding their buffer do not keep the others alive.
+                            buffers.clear();
+                            free.clear();
+                            writer.put(TRAILER);
+                            writer.close();
+                        } else writer.drain();
+                    } catch (IOException | UncheckedIOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+
+                private Bytes begin() {
+                    Bytes e = event;
+                    e.reset();
+                    e.put(first ? FIRST : NEXT);
+                    first = false;
+                    return e;
+                }
+
+                private void write(Bytes e) {
+                    writer.put(e.buf, 0, e.len);
+                    e.trim();
+                    events++;
+                }
+
+                private void encode(Buffer b, int to) {
+                    for (int i = b.flushed; i < to; i++) {
+                        final byte kind = b.kinds[i];
+                        final Bytes e = begin().put(NAME);
+                        if (kind == SPAN) {
+                            Export.jsonString(e, (String) b.refs[i]);
+                            e.put(CAT_SPAN);
+                        } else {
+                            e.put(NAMES[kind]).put(CAT_CHRONO).digits(b.chronos[i])
+                                    .put((byte) ',').utf8(((Printer) b.refs[i]).name());
+                        }
+                        e.put(b.thread);
+                        micros(e.put(kind == START ? INSTANT : COMPLETE), b.times[i] - origin);
+                        if (kind != START) micros(e.put(DUR), b.durations[i]);
+                        e.put(PID).digits(pid).put(TID).digits(b.tid);
+                        if (kind != SPAN) e.put(ARGS_CHRONO).digits(b.chronos[i]).put((byte) '}');
+                        write(e.put((byte) '}'));
+                    }
+                }
+
+                /**
+                 * Trace timestamps are in microseconds, written with the nanos as 3 decimals.
+                 * */
+                private static void micros(Bytes e, long nanos) {
+                    if (nanos < 0) {
+                        e.put((byte) '-');
+                        nanos = -nanos;
+                    }
+                    long rem = nanos % 1000;
+                    e.digits(nanos / 1000).put((byte) '.')
+                            .put((byte) ('0' + rem / 100)).put((byte) ('0' + rem / 10 % 10)).put((byte) ('0' + rem % 10));
+                }
+            }
+        }
+
+        /**
+         * Default implementation of {@link Bench#run(String, Consumer)}.
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@link Bench} = {@code new Bench(color)}, with its default iterations and time.
+         *     </li>
+         * </ul>
+         * */
+        public static Bench.Result bench(Printer color, String name, Consumer<Bench.Blackhole> body) {
+            return new Bench(color).run(name, body);
+        }
+
+        /**
+         * Micro-benchmark runner.
+         * <p> Each run:
+         * <ul>
+         *     <li>
+         *         Calibrates the cost of {@link System#nanoTime()}, and the number of operations per timed batch,
+         *         so that the timer cost is small in comparison, and is then subtracted from each batch.
+         *     </li>
+         *     <li>
+         *         Performs the warmup iterations, whose samples are discarded, so that the body gets JIT compiled.
+         *     </li>
+         *     <li>
+         *         Performs the measurement iterations, where every batch is a sample of its time per operation.
+         *     </li>
+         * </ul>
+         * <p> Values computed by the body should be handed to the {@link Blackhole}, so that the JIT cannot eliminate
+         * their computation as dead code.
+         * <p> Example usage:
+         * <pre>{@code
+         * Printer.Chrono.Bench bench = new Printer.Chrono.Bench(Printer.cyan).warmup(3).measure(5);
+         * Printer.Chrono.Bench.Result parse = bench.run("parse", bh -> bh.consume(Integer.parseInt("12345")));
+         * // a quick perf gate against the results of a previous build:
+         * boolean passed = Printer.Chrono.Bench.compare(Printer.red, Path.of("bench/baseline.bin"), 0.10, parse);
+         * Printer.Chrono.Bench.save("bench", "baseline", parse);
+         * }</pre>
+         * */
+        public static final class Bench {
+            /**
+             * Minimum duration of a timed batch.
+             * */
+            static final long MIN_BATCH_NANOS = 10_000;
+
+            private final Printer color;
+            private int warmups = 5, iterations = 10;
+            private long iterationNanos = 100_000_000;
+
+            /**
+             * @param color the color of the report of each run, {@code null} to not print it.
+             * */
+            public Bench(Printer color) {this.color = color;}
+
+            /**
+             * Sets the number of warmup iterations, 5 by default.
+             * */
+            public Bench warmup(int iterations) {
+                if (iterations < 0) throw new IllegalArgumentException("iterations must be >= 0, was: " + iterations);
+                warmups = iterations;
+                return this;
+            }
+
+            /**
+             * Sets the number of measurement iterations, 10 by default.
+             * */
+            public Bench measure(int iterations) {
+                if (iterations < 1) throw new IllegalArgumentException("iterations must be >= 1, was: " + iterations);
+                this.iterations = iterations;
+                return this;
+            }
+
+            /**
+             * Sets the duration of each iteration, 100 millis by default.
+             * */
+            public Bench time(Duration iteration) {
+                long nanos = iteration.toNanos();
+                if (nanos <= 0) throw new IllegalArgumentException("iteration must be positive, was: " + iteration);
+                iterationNanos = nanos;
+                return this;
+            }
+
+            /**
+             * Sink of the values computed by a benchmark body, which the JIT cannot prove unused.
+             * @implNote Values are compared against volatile fields that never match, objects are published
+             * into a volatile field with a decreasing probability, as done by JMH.
+             * */
+            public static final class Blackhole {
+                private volatile int i1 = 1, i2 = 2;
+                private volatile long l1 = 1, l2 = 2;
+                private volatile double d1 = 1, d2 = 2;
+                private volatile boolean b1, b2 = true;
+                private volatile Object sink;
+                private int seed = (int) System.nanoTime(), mask = 1;
+
+                Blackhole() {}
+
+                public void consume(int i) {
+                    if (i == i1 & i == i2) sink = this;
+                }
+
+                public void consume(long l) {
+                    if (l == l1 & l == l2) sink = this;
+                }
+
+                public void consume(double d) {
+                    if (d == d1 & d == d2) sink = this;
+                }
+
+                public void consume(boolean b) {
+                    if (b == b1 & b == b2) sink = this;
+                }
+
+                public void consume(Object o) {
+                    int seed = this.seed = this.seed * 1664525 + 1013904223;
+                    if ((seed & mask) == 0) {
+                        sink = o;
+                        mask = (mask << 1) + 1;
+                    }
+                }
+            }
+
+            /**
+             * The statistics of a run, in nanos per operation.
+             * @param operations the number of measured operations.
+             * @param timerOverhead the cost of a {@link System#nanoTime()} call, subtracted from each batch.
+             * */
+            public record Result(String name, long operations, double mean, double stddev,
+                                 double min, double p50, double p90, double p99, double max, double timerOverhead) {
+                StringBuilder appendTo(StringBuilder sb) {
+                    sb.append("Bench [").append(name).append("] ").append(operations).append(" ops...");
+                    decimal(sb.append("\n    mean = "), mean).append(" ns/op \u00B1 ");
+                    decimal(sb, stddev).append(" (stddev)");
+                    decimal(sb.append("\n    min = "), min);
+                    decimal(sb.append(", p50 = "), p50);
+                    decimal(sb.append(", p90 = "), p90);
+                    decimal(sb.append(", p99 = "), p99);
+                    decimal(sb.append(", max = "), max);
+                    return decimal(sb.append("\n    timer overhead = "), timerOverhead).append(" ns (subtracted)");
+                }
+
+                public void print(Printer color) {
+                    if (color.emits(null)) color.printText(appendTo(text()));
+                }
+            }
+
+            /**
+             * Appends {@code value} with 3 decimals.
+             * */
+            private static StringBuilder decimal(StringBuilder sb, double value) {
+                if (!(Math.abs(value) < Long.MAX_VALUE / 1000d)) return sb.append(value);
+                long thousandths = Math.round(value * 1000);
+                if (thousandths < 0) {
+                    sb.append('-');
+                    thousandths = -thousandths;
+                }
+                return Format.decimal(sb, thousandths, 1000);
+            }
+
+            /**
+             * @return the cost of a {@link System#nanoTime()} call, the best of several rounds.
+             * */
+            static double timerOverhead() {
+                final int calls = 10_000;
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 20; round++) {
+                    long start = System.nanoTime(), end = start;
+                    for (int i = 0; i < calls; i++) end = System.nanoTime();
+                    best = Math.min(best, end - start);
+                }
+                return best / (double) calls;
+            }
+
+            /**
+             * Runs the benchmark, and prints its {@link Result} if a color was given.
+             * */
+            public Result run(String name, Consumer<Blackhole> body) {
+                final Blackhole bh = new Blackhole();
+                final double overhead = timerOverhead();
+                int batch = batch(body, bh, 1);
+                for (int w = 0; w < warmups; w++) iterate(body, bh, batch, overhead, null);
+                // the body is faster once compiled.
+                batch = batch(body, bh, batch);
+                Samples samples = new Samples();
+                for (int m = 0; m < iterations; m++) iterate(body, bh, batch, overhead, samples);
+
+                double[] values = Arrays.copyOf(samples.values, samples.size);
+                Arrays.sort(values);
+                double sum = 0;
+                for (double v : values) sum += v;
+                final double mean = sum / values.length;
+                double squares = 0;
+                for (double v : values) squares += (v - mean) * (v - mean);
+                Result result = new Result(
+                        name, (long) values.length * batch, mean,
+                        values.length > 1 ? Math.sqrt(squares / (values.length - 1)) : 0,
+                        values[0], percentile(values, 0.50), percentile(values, 0.90), percentile(values, 0.99),
+                        values[values.length - 1], overhead
+                );
+                if (color != null) result.print(color);
+                return result;
+            }
+
+            /**
+             * @return the number of operations, from {@code batch}, that take at least {@link #MIN_BATCH_NANOS}.
+             * */
+            private static int batch(Consumer<Blackhole> body, Blackhole bh, int batch) {
+                while (batch < 1 << 30) {
+                    long best = Long.MAX_VALUE;
+                    for (int trial = 0; trial < 3; trial++) {
+                        long start = System.nanoTime();
+                        for (int i = 0; i < batch; i++) body.accept(bh);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    if (best >= MIN_BATCH_NANOS) break;
+                    batch <<= 1;
+                }
+                return batch;
+            }
+
+            private static final class Samples {
+                double[] values = new double[1024];
+                int size;
+
+                void add(double value) {
+                    if (size == values.length) values = Arrays.copyOf(values, size << 1);
+                    values[size++] = value;
+                }
+            }
+
+            /**
+             * Runs batches for {@link #iterationNanos}, at least one.
+             * */
+            private void iterate(Consumer<Blackhole> body, Blackhole bh, int batch, double overhead, Samples samples) {
+                long start = System.nanoTime();
+                final long end = start + iterationNanos;
+                do {
+                    for (int i = 0; i < batch; i++) body.accept(bh);
+                    // the end of a batch is the start of the next one, so each batch pays a single timer call.
+                    final long now = System.nanoTime();
+                    if (samples != null) samples.add(Math.max(0, (now - start - overhead) / batch));
+                    start = now;
+                } while (start - end < 0);
+            }
+
+            private static double percentile(double[] sorted, double percentile) {
+                return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+            }
+
+            private static final String[] COLUMNS = {"name", "operations", "mean", "stddev", "min", "p50", "p90", "p99", "max", "timer_overhead"};
+
+            /**
+             * Saves {@code results} as {@link Export#to_binary}, which can be used as the baseline of
+             * {@link #compare(Printer, Path, double, Result...)}.
+             * */
+            public static void save(String directory, String fileName, Result... results) {
+                save(Export.to_binary, directory, fileName, results);
+            }
+
+            /**
+             * Saves {@code results} in the given format, one row per {@link Result}.
+             * */
+            public static void save(Export format, String directory, String fileName, Result... results) {
+                final int rows = results.length;
+                String[] names = new String[rows];
+                long[] operations = new long[rows];
+                double[][] values = new double[COLUMNS.length - 2][rows];
+                for (int r = 0; r < rows; r++) {
+                    Result result = results[r];
+                    names[r] = result.name;
+                    operations[r] = result.operations;
+                    double[] row = {result.mean, result.stddev, result.min, result.p50, result.p90, result.p99, result.max, result.timerOverhead};
+                    for (int c = 0; c < row.length; c++) values[c][r] = row[c];
+                }
+                Export.Columns columns = new Export.Columns().add(COLUMNS[0], names).add(COLUMNS[1], operations);
+                for (int c = 0; c < values.length; c++) columns.add(COLUMNS[c + 2], values[c]);
+                format.save(directory, fileName, columns);
+            }
+
+            /**
+             * The {@link Result#p50()} of a run against the one of its baseline.
+             * @param change the relative change, e.g. {@code 0.25} when the current run is 25% slower.
+             * */
+            public record Comparison(String name, double baseline, double current, double change, boolean regressed) {}
+
+            /**
+             * Compares the {@link Result#p50()} of each result against the one with the same name in {@code baseline},
+             * a file saved via {@link #save(String, String, Result...)}.
+             * <p> Each comparison is printed with {@code color}, regressions with {@link Printer#red}.
+             * @param threshold the relative slowdown above which a result is a regression, e.g. {@code 0.10} for 10%.
+             * @return true if no result regressed, results without baseline do not regress.
+             * */
+            public static boolean compare(Printer color, Path baseline, double threshold, Result... results) throws IOException {
+                boolean passed = true;
+                for (Comparison comparison : compare(baseline, threshold, results)) {
+                    passed &= !comparison.regressed;
+                    Printer printer = comparison.regressed ? red : color;
+                    if (!printer.emits(null)) continue;
+                    StringBuilder sb = text().append("Bench [").append(comparison.name).append("] p50 = ");
+                    decimal(sb, comparison.current).append(" ns/op");
+                    if (Double.isNaN(comparison.baseline)) sb.append(", no baseline");
+                    else {
+                        decimal(sb.append(" vs "), comparison.baseline).append(" ns/op (");
+                        decimal(sb.append(comparison.change >= 0 ? "+" : ""), comparison.change * 100).append("%)");
+                        if (comparison.regressed) sb.append(" REGRESSION");
+                    }
+                    printer.printText(sb);
+                }
+                return passed;
+            }
+
+            /**
+             * Variation of {@link #compare(Printer, Path, double, Result...)} without printing.
+             * <p> Results without baseline have a {@link Double#NaN} {@link Comparison#baseline()}.
+             * */
+            public static List<Comparison> compare(Path baseline, double threshold, Result... results) throws IOException {
+                if (!(threshold >= 0)) throw new IllegalArgumentException("threshold must be >= 0, was: " + threshold);
+                List<Comparison> comparisons = new ArrayList<>(results.length);
+                try (Export.Columns.Mapped mapped = Export.read(baseline)) {
+                    final int name = mapped.indexOf(COLUMNS[0]), p50 = mapped.indexOf(COLUMNS[5]);
+                    if (name < 0 || p50 < 0) throw new IOException("Not a Bench file: " + baseline);
+                    for (Result result : results) {
+                        double base = Double.NaN;
+                        for (int r = 0; r < mapped.rows(); r++) {
+                            if (result.name.equals(mapped.getString(name, r))) base = mapped.getDouble(p50, r);
+                        }
+                        double change = Double.isNaN(base) ? Double.NaN : base == 0 ? (result.p50 == 0 ? 0 : Double.POSITIVE_INFINITY) : result.p50 / base - 1;
+                        comparisons.add(new Comparison(result.name, base, result.p50, change, change > threshold));
+                    }
+                }
+                return comparisons;
+            }
+        }
+
+        /**
+         * Defines the way in which the {@link Chrono} object will print the time passed.
+         * <p> Custom formats can be registered by name via {@link #register(String, NanoFormat)}.
+         * @implNote Negative amounts are displayed as the negation of their absolute value.
+         * */
+        public enum Format implements NanoFormat {
+            /**
+             * Will display the total nanos passed, e.g.: {@code 1500000000 Nanos}.
+             * */
+            nanos(
+                    (nanos, into) -> into.append(nanos).append(" Nanos")
+            ),
+            /**
+             * Will display the nanos passed in the format: {@code %d Secs. %d Millis. %d Nanos},
+             * where {@code Millis} is the millisecond part of the second and {@code Nanos} the nanosecond part of the second.
+             * */
+            full(
+                    (nanos, into) -> into.append(nanos / 1_000_000_000).append(" Secs. ")
+                            .append((nanos / 1_000_000) % 1000).append(" Millis. ")
+                            .append(nanos % 1_000_000_000).append(" Nanos")
+            ),
+            /**
+             * Will choose the unit by magnitude, e.g.: {@code 850 ns}, 12.345 &micro;s, {@code 3.500 ms}, {@code 2.000 s}.
+             * */
+            adaptive(
+                    (nanos, into) -> {
+                        if (nanos < 1_000) into.append(nanos).append(" ns");
+                        else if (nanos < 1_000_000) decimal(into, nanos, 1_000).append(" \u00B5s");
+                        else if (nanos < 1_000_000_000) decimal(into, nanos, 1_000_000).append(" ms");
+                        else decimal(into, nanos, 1_000_000_000).append(" s");
+                    }
+            ),
+            /**
+             * Will display the micros passed with 3 decimals, e.g.: {@code 1500.250 Micros}.
+             * */
+            micros(
+                    (nanos, into) -> decimal(into, nanos, 1_000).append(" Micros")
+            ),
+            /**
+             * Will display the millis passed with 3 decimals, e.g.: {@code 1500.250 Millis}.
+             * */
+            millis(
+                    (nanos, into) -> decimal(into, nanos, 1_000_000).append(" Millis")
+            ),
+            /**
+             * Will display an ISO-8601 duration, the same as {@link Duration#toString()}, e.g.: {@code PT1M2.5S}.
+             * */
+            iso(
+                    Format::iso
+            );
+
+            final NanoFormat format;
+
+            Format(NanoFormat format) {
+                this.format = format;
+            }
+
+            @Override
+            public void format(long nanos, StringBuilder into) {
+                if (nanos < 0) {
+                    into.append('-');
+                    // Long.MIN_VALUE has no positive counterpart.
+                    nanos = nanos == Long.MIN_VALUE ? Long.MAX_VALUE : -nanos;
+                }
+                format.format(nanos, into);
+            }
+
+            private static final ConcurrentHashMap<String, NanoFormat> registered = new ConcurrentHashMap<>();
+
+            /**
+             * Registers a custom {@link NanoFormat} under {@code name}.
+             * @throws IllegalArgumentException if {@code name} belongs to a {@link Format} constant.
+             * @return the previously registered {@link NanoFormat} under the same name, if any.
+             * */
+            public static NanoFormat register(String name, NanoFormat format) {
+                if (format == null) throw new NullPointerException("format");
+                for (Format f : values()) {
+                    if (f.name().equals(name)) throw new IllegalArgumentException("Name [" + name + "] is reserved by Format." + name);
+                }
+                return registered.put(name, format);
+            }
+
+            /**
+             * @return the {@link Format} constant or registered {@link NanoFormat} of the given {@code name}.
+             * @throws IllegalArgumentException if no format with that name exists.
+             * */
+            public static NanoFormat of(String name) {
+                NanoFormat format = registered.get(name);
+                return format != null ? format : valueOf(name);
+            }
+
+            /**
+             * Appends {@code nanos / unit} with 3 truncated decimals.
+             * */
+            static StringBuilder decimal(StringBuilder into, long nanos, long unit) {
+                into.append(nanos / unit).append('.');
+                return pad(into, (nanos % unit) / (unit / 1000), 3);
+            }
+
+            static StringBuilder pad(StringBuilder into, long value, int digits) {
+                for (long limit = Bytes.pow10(digits - 1); limit > value && limit > 1; limit /= 10) into.append('0');
+                return into.append(value);
+            }
+
+            private static void iso(long nanos, StringBuilder into) {
+                into.append("PT");
+                if (nanos == 0) {
+                    into.append("0S");
+                    return;
+                }
+                long seconds = nanos / 1_000_000_000, nano = nanos % 1_000_000_000,
+                        hours = seconds / 3600, minutes = (seconds / 60) % 60;
+                seconds %= 60;
+                if (hours != 0) into.append(hours).append('H');
+                if (minutes != 0) into.append(minutes).append('M');
+                if (seconds == 0 && nano == 0) return;
+                into.append(seconds);
+                if (nano != 0) {
+                    int digits = 9;
+                    while (nano % 10 == 0) {
+                        nano /= 10;
+                        digits--;
+                    }
+                    pad(into.append('.'), nano, digits);
+                }
+                into.append('S');
+            }
+        }
+
+        static String formatNanos(NanoFormat format, long nanoseconds) {
+            StringBuilder sb = new StringBuilder();
+            format.format(nanoseconds, sb);
+            return sb.toString();
+        }
+
+        /**
+         * Thread-safe wall-clock formatter, the text is cached per minute.
+         * */
+        private static final DateTimeFormatter wall_clock_format = DateTimeFormatter.ofPattern("hh:mm a");
+
+        private record WallClock(long minute, String text) {}
+
+        private static volatile WallClock wall_clock = new WallClock(Long.MIN_VALUE, "");
+
+        static String wallClock() {
+            long now = System.currentTimeMillis(), minute = Math.floorDiv(now, 60_000);
+            WallClock clock = wall_clock;
+            if (clock.minute != minute) {
+                clock = new WallClock(minute, wall_clock_format.format(Instant.ofEpochMilli(now).atZone(ZoneId.systemDefault())));
+                wall_clock = clock;
+            }
+            return clock.text;
+        }
+
+        /**
+         * Default implementation of {@link #Chrono(Format, Printer, boolean)}.
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code start} = {@code false}
+         *     </li>
+         * </ul>
+         * */
+        public Chrono(Format format, Printer color) {
+            this(format, color, false);
+        }
+
+        /**
+         * Mina constructor for the {@link Chrono} class
+         * @param start, set's the chronometer going when this constructor is called with true.
+         * @param color the color of the print
+         * @param format the {@link Format} by which the nanos will be displayed.
+         * */
+        public Chrono(Format format, Printer color, boolean start) {
+            this((NanoFormat) format, color, start);
+        }
+
+        /**
+         * Variation of {@link #Chrono(Format, Printer)} for custom {@link NanoFormat}s.
+         * @see Format#register(String, NanoFormat)
+         * */
+        public Chrono(NanoFormat format, Printer color) {
+            this(format, color, false);
+        }
+
+        /**
+         * Variation of {@link #Chrono(Format, Printer, boolean)} for custom {@link NanoFormat}s.
+         * @see Format#register(String, NanoFormat)
+         * */
+        public Chrono(NanoFormat format, Printer color, boolean start) {
+            if (format == null) throw new NullPointerException("format");
+            this.color = color;
+            this.format = format;
+            if (start) start();
+        }
+
+        /**
+         * Default implementation of {@link #Chrono(Format, Printer)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@link Format} = {@link Format#full}
+         *     </li>
+         * </ul>
+         * */
+        public Chrono(Printer color) {
+            this(Format.full, color);
+        }
+
+        /**
+         * Default implementation of {@link #Chrono(Format, Printer, boolean)}
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@link Format} = {@link Format#full}
+         *     </li>
+         * </ul>
+         * */
+        Chrono(Printer color, boolean start) {
+            this(Format.full, color, start);
+        }
+
+        /**
+         * Will set the starting time ({@link #begin}) to the exact {@link System#nanoTime()} when this method is being called.
+         * */
+        public void start() {
+            this.begin = System.nanoTime();
+            this.last = begin;
+            if (Trace.session != null) Trace.event(Trace.START, begin, 0, chronoId, color);
+            if (!color.emits(null)) return;
+            color.printText(text().append("Chrono ").append(chronoId).append(", begins at = ").append(wallClock()));
+        }
+
+        /**
+         * Will trigger a {@link #start()} without printing
+         * */
+        public void silentStart() {
+            this.begin = System.nanoTime();
+            this.last = begin;
+            if (Trace.session != null) Trace.event(Trace.START, begin, 0, chronoId, color);
+        }
+
+        /**
+         * Without printing, this method will set the starting time ({@link #begin}) to the exact {@link System#nanoTime()}.
+         * */
+        public String startText() {
+            this.begin = System.nanoTime();
+            this.last = begin;
+            if (Trace.session != null) Trace.event(Trace.START, begin, 0, chronoId, color);
+            return color.printer.apply(color.colorWrap,
+                    "Chrono " + chronoId + ", begins at = " + wallClock()
+            );
+        }
+
+        /**
+         * @return a {@link Chrono} object that implements a {@link #Chrono(Printer, boolean)} constructor,
+         * <p> Where:
+         * <ul>
+         *     <li>
+         *         {@code start} = true
+         *     </li>
+         * </ul>
+         * */
+        public static Chrono begin(Printer color) {
+            return new Chrono(color, true);
+        }
+    }
+
+    /**
+     * A <a href="package-summary.html">functional interface</a> for exporting data to a file.
+     */
+    @FunctionalInterface
+    interface Exporter {
+        /**
+         * Saves the provided headers and data to a file in the specified directory with the given file name.
+         *
+         * @param DIRECTORY the directory where the file will be saved
+         * @param fileName the name of the file without the extension
+         * @param headers an array of header values to be written as the first line of the file
+         * @param data a 2D array representing the data rows to be written to the file. Each sub-array should match the length of the headers array
+         *
+         * <p>Example usage:</p>
+         * <pre>{@code
+         * public class ExporterExample {
+         *     public static void main(String[] args) {
+         *         String directory = "C:\\exports";
+         *         String fileName = "example";
+         *         String[] headers = {"ID", "Name", "Age"};
+         *         String[][] data = {
+         *             {"1", "Alice", "30"},
+         *             {"2", "Bob", "25"},
+         *             {"3", "Charlie", "35"}
+         *         };
+         *
+         *         Export.to_csv.save(directory, fileName, headers, data);
+         *     }
+         * }
+         * }</pre>
+         */
+        void save(
+                String DIRECTORY,
+                String fileName,
+                String[] headers, String[][] data
+        );
+    }
+
+    /**
+     * Standard set of {@link Exporter} file extensions implementations.
+     * <p> Besides the {@link String} based rows, typed {@link Columns} can be saved via {@link #save(String, String, Columns)},
+     * where numbers are written without intermediate {@link String}s.
+     * @see Exporter#save(String, String, String[], String[][])
+     * */
+    public enum Export implements Exporter {
+        /**
+         * Comma separated values as defined by RFC-4180.
+         * */
+        to_csv(
+                ".csv"
+        ),
+        /**
+         * Tab separated values, where tabs, line breaks and backslashes within cells are escaped as
+         * {@code \t}, {@code \n}, {@code \r} and {@code \\}.
+         * */
+        to_tsv(
+                ".tsv"
+        ),
+        /**
+         * JSON Lines, one JSON object per row keyed by the headers (or a JSON array per row if no headers are given).
+         * */
+        to_jsonl(
+                ".jsonl"
+        ),
+        /**
+         * Compact little-endian binary columnar format, readable back via {@link #read(Path)}.
+         * <p> Typed {@link Columns} keep their types, {@link String} rows are saved as {@link Columns.Type#utf8} columns,
+         * named after the headers (or after their index if no headers are given).
+         * Since the layout is columnar, {@link String} rows are collected in memory before being written.
+         * @see Columns
+         * */
+        to_binary(
+                ".bin"
+        );
+
+        final String type;
+
+        Export(String type) {
+            this.type = type;
+        }
+
+        String label() {return type.substring(1).toUpperCase();}
+
+        private static volatile int buffer_size = 1 << 16;
+
+        /**
+         * Sets the size of the direct {@link ByteBuffer} used to encode rows before they are written, 64 KiB by default.
+         * <p> The memory used by any streaming {@code save} is bounded by this size.
+         * */
+        public static void setBufferSize(int bytes) {
+            if (bytes < 64) throw new IllegalArgumentException("bytes must be >= 64, was: " + bytes);
+            buffer_size = bytes;
+        }
+
+        /**
+         * @return the size of the direct {@link ByteBuffer} used to encode rows.
+         * */
+        public static int getBufferSize() {return buffer_size;}
+
+        private static volatile int parallelism = 1, chunk_size = 1 << 12;
+
+        /**
+         * Sets the number of threads used to encode rows, 1 (sequential) by default.
+         * <p> With a value greater than 1, rows are split into chunks of {@link #getChunkSize()} rows,
+         * the chunks are encoded concurrently on a {@link ForkJoinPool} into per-chunk buffers
+         * and written in order with positional {@link FileChannel#write(ByteBuffer, long)} calls.
+         * The output is byte-identical to the sequential one.
+         * <p> At most {@code 2 * parallelism} chunks are held in memory at any given time.
+         * */
+        public static void setParallelism(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("threads must be >= 1, was: " + threads);
+            parallelism = threads;
+        }
+
+        /**
+         * @return the number of threads used to encode rows.
+         * */
+        public static int getParallelism() {return parallelism;}
+
+        /**
+         * Sets the number of rows per chunk when {@link #getParallelism()} is greater than 1, 4096 by default.
+         * */
+        public static void setChunkSize(int rows) {
+            if (rows < 1) throw new IllegalArgumentException("rows must be >= 1, was: " + rows);
+            chunk_size = rows;
+        }
+
+        /**
+         * @return the number of rows per chunk.
+         * */
+        public static int getChunkSize() {return chunk_size;}
+
+        /**
+         * Receives the rows of a streaming {@code save} one at a time.
+         * */
+        public interface RowWriter {
+            /**
+             * Encodes a row, {@code null} cells are written as empty cells.
+             * */
+            void row(String... cells);
+        }
+
+        /**
+         * A callback that pushes its rows into a {@link RowWriter}.
+         * @see #save(String, String, String[], RowSource)
+         * */
+        @FunctionalInterface
+        public interface RowSource {
+            void writeTo(RowWriter writer);
+        }
+
+        /**
+         * @return the {@link Path} of the file exported into {@code DIRECTORY}.
+         * */
+        public Path pathOf(String DIRECTORY, String fileName) {
+            return Paths.get(DIRECTORY).resolve(fileName + type);
+        }
+
+        @Override
+        public void save(String DIRECTORY, String fileName, String[] headers, String[][] data) {
+            save(DIRECTORY, fileName, headers, Arrays.asList(data).iterator());
+        }
+
+        /**
+         * Streaming variation of {@link #save(String, String, String[], String[][])}.
+         * <p> Rows are consumed one at a time, so the dataset never needs to be fully materialized.
+         * */
+        public void save(String DIRECTORY, String fileName, String[] headers, Iterator<? extends String[]> rows) {
+            save(DIRECTORY, fileName, headers, writer -> {
+                while (rows.hasNext()) writer.row(rows.next());
+            });
+        }
+
+        /**
+         * Streaming variation of {@link #save(String, String, String[], String[][])}, the {@link Stream} will be closed.
+         * */
+        public void save(String DIRECTORY, String fileName, String[] headers, Stream<? extends String[]> rows) {
+            try (rows) {
+                save(DIRECTORY, fileName, headers, rows.iterator());
+            }
+        }
+
+        /**
+         * Streaming variation of {@link #save(String, String, String[], String[][])}.
+         * */
+        public void save(String DIRECTORY, String fileName, String[] headers, Spliterator<? extends String[]> rows) {
+            save(DIRECTORY, fileName, headers, writer -> rows.forEachRemaining(writer::row));
+        }
+
+        /**
+         * Streaming variation of {@link #save(String, String, String[], String[][])} where the rows are pushed by {@code rows}.
+         * <p> Rows are encoded incrementally into a direct {@link ByteBuffer} of {@link #getBufferSize()} bytes,
+         * which is written through a {@link FileChannel} every time it fills up.
+         * <p> Example usage:
+         * <pre>{@code
+         * Export.to_csv.save(directory, "timings", new String[]{"id", "nanos"}, writer -> {
+         *     for (int i = 0; i < samples.length; i++) writer.row(Integer.toString(i), Long.toString(samples[i]));
+         * });
+         * }</pre>
+         * */
+        public void save(String DIRECTORY, String fileName, String[] headers, RowSource rows) {
+            Path filePath = pathOf(DIRECTORY, fileName);
+            final long start = System.nanoTime();
+            final long[] count = {0};
+            final RowSource counted = writer -> rows.writeTo(cells -> {
+                count[0]++;
+                writer.row(cells);
+            });
+            try {
+                int parallelism = Export.parallelism;
+                if (this == to_binary) saveBinary(filePath, headers, counted);
+                else if (parallelism > 1) saveParallel(filePath, headers, counted, parallelism, chunk_size);
+                else saveSequential(filePath, headers, counted);
+                if (Metrics.enabled) Metrics.exported(count[0], Files.size(filePath), System.nanoTime() - start);
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+                return;
+            }
+            System.out.println(label() + " file created successfully at: " + filePath);
+        }
+
+        private static void checkRow(String[] headers, String[] cells) {
+            assert headers == null || cells.length == headers.length :
+                    "Data row length (" + cells.length + ") does not match headers length (" + headers.length + ")";
+        }
+
+        private void saveSequential(Path filePath, String[] headers, RowSource rows) throws IOException {
+            try (ChannelWriter writer = new ChannelWriter(filePath, buffer_size)) {
+                if (headers != null && writesHeader()) encodeRow(writer, null, headers);
+                rows.writeTo(cells -> {
+                    checkRow(headers, cells);
+                    encodeRow(writer, headers, cells);
+                });
+            }
+        }
+
+        private static ForkJoinPool pool;
+
+        /**
+         * @return the pool shared by every parallel save, replaced when the {@code parallelism} changes.
+         * The replaced pool is not shut down, so that saves still using it complete, its idle threads retire on their own.
+         * */
+        private static synchronized ForkJoinPool pool(int parallelism) {
+            ForkJoinPool p = pool;
+            if (p == null || p.getParallelism() != parallelism) pool = p = new ForkJoinPool(parallelism);
+            return p;
+        }
+
+        /**
+         * Transposes the rows into {@link Columns.Type#utf8} columns.
+         * @throws IllegalArgumentException if the rows are not of the same length, or a column exceeds {@link #MAX_COLUMN} bytes.
+         * */
+        private static void saveBinary(Path filePath, String[] headers, RowSource rows) throws IOException {
+            final List<String[]> collected = new ArrayList<>();
+            rows.writeTo(collected::add);
+            final int width = headers != null ? headers.length : collected.isEmpty() ? 0 : collected.get(0).length;
+            for (int r = 0; r < collected.size(); r++) {
+                int length = collected.get(r).length;
+                if (length != width) throw new IllegalArgumentException("Row " + r + " length (" + length + ") does not match the columns (" + width + ")");
+            }
+            final Columns columns = new Columns();
+            for (int c = 0; c < width; c++) {
+                String[] column = new String[collected.size()];
+                for (int r = 0; r < column.length; r++) column[r] = collected.get(r)[c];
+                columns.add(headers != null ? headers[c] : Integer.toString(c), column);
+            }
+            final long[] lengths = lengths(columns);
+            try (ChannelWriter writer = new ChannelWriter(filePath, buffer_size)) {
+                saveBinary(writer, columns, lengths);
+            }
+        }
+
+        private void saveParallel(Path filePath, String[] headers, RowSource rows, int parallelism, int chunkSize) throws IOException {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final ChunkWriter chunks = new ChunkWriter(channel, pool(parallelism), 2 * parallelism);
+                if (headers != null && writesHeader()) chunks.submit(null, new String[][]{headers}, 1);
+                final String[][][] chunk = {new String[chunkSize][]};
+                final int[] size = {0};
+                rows.writeTo(cells -> {
+                    checkRow(headers, cells);
+                    chunk[0][size[0]++] = cells;
+                    if (size[0] == chunkSize) {
+                        chunks.submit(headers, chunk[0], chunkSize);
+                        chunk[0] = new String[chunkSize][];
+                        size[0] = 0;
+                    }
+                });
+                if (size[0] > 0) chunks.submit(headers, chunk[0], size[0]);
+                chunks.finish();
+            }
+        }
+
+        /**
+         * Encodes chunks on a {@link ForkJoinPool} and writes them in submission order at their positions.
+         * <p> The chunk buffers are recycled as they are, without {@link Bytes#trim()}, since a chunk usually grows past
+         * {@link Bytes#MAX_RETAINED}; at most {@code maxPending + 1} of them exist per save.
+         * */
+        private final class ChunkWriter {
+            final FileChannel channel;
+            final ForkJoinPool pool;
+            final int maxPending;
+            final ArrayDeque<ForkJoinTask<Bytes>> pending = new ArrayDeque<>();
+            final ArrayDeque<Bytes> free = new ArrayDeque<>();
+            long position;
+
+            ChunkWriter(FileChannel channel, ForkJoinPool pool, int maxPending) {
+                this.channel = channel;
+                this.pool = pool;
+                this.maxPending = maxPending;
+            }
+
+            void submit(String[] headers, String[][] rows, int size) {
+                Bytes pooled = free.poll();
+                final Bytes bytes = pooled != null ? pooled : new Bytes(1 << 16);
+                pending.add(pool.submit(() -> {
+                    bytes.reset();
+                    for (int i = 0; i < size; i++) encodeRow(bytes, headers, rows[i]);
+                    return bytes;
+                }));
+                if (pending.size() >= maxPending) writeNext();
+            }
+
+            void writeNext() {
+                Bytes bytes = pending.poll().join();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.buf, 0, bytes.len);
+                try {
+                    while (buffer.hasRemaining()) position += channel.write(buffer, position);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                free.add(bytes);
+            }
+
+            void finish() {
+                while (!pending.isEmpty()) writeNext();
+            }
+        }
+
+        boolean writesHeader() {return this == to_csv || this == to_tsv;}
+
+        /**
+         * Encodes a row in the format of this {@link Export}.
+         * @param headers nullable, used as keys by {@link #to_jsonl}.
+         * */
+        void encodeRow(ByteSink sink, String[] headers, String[] cells) {
+            switch (this) {
+                case to_csv -> {
+                    for (int i = 0; i < cells.length; i++) {
+                        if (i != 0) sink.put((byte) ',');
+                        csvCell(sink, cells[i]);
+                    }
+                    sink.put(CRLF);
+                }
+                case to_tsv -> {
+                    for (int i = 0; i < cells.length; i++) {
+                        if (i != 0) sink.put((byte) '\t');
+                        tsvCell(sink, cells[i]);
+                    }
+                    sink.put((byte) '\n');
+                }
+                case to_jsonl -> {
+                    sink.put(headers == null ? (byte) '[' : (byte) '{');
+                    for (int i = 0; i < cells.length; i++) {
+                        if (i != 0) sink.put((byte) ',');
+                        if (headers != null) {
+                            jsonString(sink, headers[i]);
+                            sink.put((byte) ':');
+                        }
+                        jsonString(sink, cells[i]);
+                    }
+                    sink.put(headers == null ? (byte) ']' : (byte) '}');
+                    sink.put((byte) '\n');
+                }
+                case to_binary -> throw new IllegalStateException("to_binary rows are saved by columns");
+            }
+        }
+
+        private static final byte[] CRLF = {'\r', '\n'}, NULL = {'n', 'u', 'l', 'l'};
+
+        /**
+         * Encodes a cell as defined by RFC-4180, cells containing commas, quotes or line breaks are quoted,
+         * and quotes are escaped by doubling them.
+         * */
+        static void csvCell(ByteSink writer, String cell) {
+            if (cell == null) return;
+            if (needsQuotes(cell)) {
+                writer.put((byte) '"');
+                int from = 0, quote;
+                while ((quote = cell.indexOf('"', from)) >= 0) {
+                    writer.utf8(cell, from, quote + 1);
+                    writer.put((byte) '"');
+                    from = quote + 1;
+                }
+                writer.utf8(cell, from, cell.length());
+                writer.put((byte) '"');
+            } else writer.utf8(cell, 0, cell.length());
+        }
+
+        private static boolean needsQuotes(String cell) {
+            for (int i = 0, l = cell.length(); i < l; i++) {
+                char c = cell.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+            }
+            return false;
+        }
+
+        static void tsvCell(ByteSink writer, String cell) {
+            if (cell == null) return;
+            int from = 0;
+            for (int i = 0, l = cell.length(); i < l; i++) {
+                char escaped;
+                switch (cell.charAt(i)) {
+                    case '\t' -> escaped = 't';
+                    case '\n' -> escaped = 'n';
+                    case '\r' -> escaped = 'r';
+                    case '\\' -> escaped = '\\';
+                    default -> {
+                        continue;
+                    }
+                }
+                writer.utf8(cell, from, i);
+                writer.put((byte) '\\');
+                writer.put((byte) escaped);
+                from = i + 1;
+            }
+            writer.utf8(cell, from, cell.length());
+        }
+
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        /**
+         * Encodes a JSON string literal, or {@code null}.
+         * */
+        static void jsonString(ByteSink writer, String s) {
+            if (s == null) {
+                writer.put(NULL);
+                return;
+            }
+            writer.put((byte) '"');
+            int from = 0;
+            for (int i = 0, l = s.length(); i < l; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') continue;
+                writer.utf8(s, from, i);
+                writer.put((byte) '\\');
+                switch (c) {
+                    case '"', '\\' -> writer.put((byte) c);
+                    case '\n' -> writer.put((byte) 'n');
+                    case '\r' -> writer.put((byte) 'r');
+                    case '\t' -> writer.put((byte) 't');
+                    case '\b' -> writer.put((byte) 'b');
+                    case '\f' -> writer.put((byte) 'f');
+                    default -> {
+                        writer.put((byte) 'u');
+                        writer.put((byte) '0');
+                        writer.put((byte) '0');
+                        writer.put(HEX[c >> 4]);
+                        writer.put(HEX[c & 0xF]);
+                    }
+                }
+                from = i + 1;
+            }
+            writer.utf8(s, from, s.length());
+            writer.put((byte) '"');
+        }
+
+        /**
+         * A set of named, typed columns of equal length.
+         * <p> Primitive columns are kept as given (not copied), and written without boxing nor intermediate {@link String}s.
+         * <p> Example usage:
+         * <pre>{@code
+         * Export.Columns columns = new Export.Columns()
+         *         .add("id", ids)            // int[]
+         *         .add("nanos", nanos)       // long[]
+         *         .add("ratio", ratios)      // double[]
+         *         .add("label", labels);     // String[]
+         * Export.to_binary.save(directory, "timings", columns);
+         * try (Export.Columns.Mapped mapped = Export.read(Export.to_binary.pathOf(directory, "timings"))) {
+         *     LongBuffer reloaded = mapped.longs(1);
+         * }
+         * }</pre>
+         * */
+        public static final class Columns {
+
+            /**
+             * The type of a column, its id is the one stored by {@link #to_binary}.
+             * */
+            public enum Type {
+                int32(1, 4), int64(2, 8), float64(3, 8), utf8(4, 8);
+
+                final byte id;
+                /**
+                 * Bytes per row, for {@link #utf8} the size of each offset.
+                 * */
+                final int width;
+
+                Type(int id, int width) {
+                    this.id = (byte) id;
+                    this.width = width;
+                }
+
+                /**
+                 * @return the type of the given id, {@code null} if unknown.
+                 * */
+                static Type of(byte id) {
+                    for (Type type : values()) if (type.id == id) return type;
+                    return null;
+                }
+            }
+
+            final List<String> names = new ArrayList<>();
+            final List<Type> types = new ArrayList<>();
+            final List<Object> data = new ArrayList<>();
+            private int rows = -1;
+
+            private Columns add(String name, Type type, Object values, int length) {
+                if (name == null) throw new NullPointerException("name");
+                if (rows != -1 && rows != length) {
+                    throw new IllegalArgumentException("Column [" + name + "] length (" + length + ") does not match the rows (" + rows + ")");
+                }
+                rows = length;
+                names.add(name);
+                types.add(type);
+                data.add(values);
+                return this;
+            }
+
+            public Columns add(String name, int[] values) {return add(name, Type.int32, values, values.length);}
+
+            public Columns add(String name, long[] values) {return add(name, Type.int64, values, values.length);}
+
+            public Columns add(String name, double[] values) {return add(name, Type.float64, values, values.length);}
+
+            /**
+             * {@code null} values are written as empty cells, as {@code null} in JSON and as empty strings in binary.
+             * */
+            public Columns add(String name, String[] values) {return add(name, Type.utf8, values, values.length);}
+
+            /**
+             * @return the number of rows.
+             * */
+            public int rows() {return Math.max(rows, 0);}
+
+            /**
+             * @return the number of columns.
+             * */
+            public int size() {return names.size();}
+
+            /**
+             * Memory-mapped, read-only view of a file saved via {@link #to_binary}.
+             * <p> Each column is mapped separately, no data is copied into the heap until accessed.
+             * */
+            public static final class Mapped implements AutoCloseable {
+                private final FileChannel channel;
+                private final int rows;
+                private final String[] names;
+                private final Type[] types;
+                private final ByteBuffer[] data;
+
+                Mapped(FileChannel channel, int rows, String[] names, Type[] types, ByteBuffer[] data) {
+                    this.channel = channel;
+                    this.rows = rows;
+                    this.names = names;
+                    this.types = types;
+                    this.data = data;
+                }
+
+                public int rows() {return rows;}
+
+                public int columns() {return names.length;}
+
+                public String name(int column) {return names[column];}
+
+                public Type type(int column) {return types[column];}
+
+                /**
+                 * @return the index of the column with the given name, -1 if absent.
+                 * */
+                public int indexOf(String name) {
+                    for (int i = 0; i < names.length; i++) if (names[i].equals(name)) return i;
+                    return -1;
+                }
+
+                private ByteBuffer column(int column, Type type) {
+                    if (types[column] != type) throw new IllegalArgumentException("Column [" + names[column] + "] is of type " + types[column]);
+                    return data[column];
+                }
+
+                public IntBuffer ints(int column) {return column(column, Type.int32).asIntBuffer();}
+
+                public LongBuffer longs(int column) {return column(column, Type.int64).asLongBuffer();}
+
+                public DoubleBuffer doubles(int column) {return column(column, Type.float64).asDoubleBuffer();}
+
+                /**
+                 * @return the byte position of {@code row} in a column of {@code width} bytes per row.
+                 * */
+                private int position(int row, int width) {
+                    return Math.toIntExact((long) Objects.checkIndex(row, rows) * width);
+                }
+
+                public int getInt(int column, int row) {return column(column, Type.int32).getInt(position(row, 4));}
+
+                public long getLong(int column, int row) {return column(column, Type.int64).getLong(position(row, 8));}
+
+                public double getDouble(int column, int row) {return column(column, Type.float64).getDouble(position(row, 8));}
+
+                public String getString(int column, int row) {
+                    ByteBuffer buffer = column(column, Type.utf8);
+                    long strings = ((long) rows + 1) << 3;
+                    int at = position(row, 8);
+                    long from = buffer.getLong(at), to = buffer.getLong(at + 8);
+                    if (from < 0 || from > to || strings + to > buffer.capacity()) {
+                        throw new IllegalStateException("Corrupt offsets [" + from + ", " + to + ") of row " + row + " in column [" + names[column] + "]");
+                    }
+                    byte[] utf8 = new byte[(int) (to - from)];
+                    buffer.get((int) (strings + from), utf8);
+                    return new String(utf8, StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    channel.close();
+                }
+            }
+        }
+
+        private static final byte[] MAGIC = {'P', 'C', 'O', 'L'};
+        private static final int VERSION = 1;
+
+        /**
+         * Saves typed {@link Columns}.
+         * <p> Text formats are encoded row by row, numbers are written as digits directly and {@code double}s
+         * in the same format as {@link Double#toString(double)} ({@code null} for non-finite values in {@link #to_jsonl}).
+         * <p> {@link #to_binary} files have the layout (little-endian):
+         * <pre>{@code
+         * "PCOL" | int32 version | int32 columns | int64 rows
+         * per column: int8 type | int32 name length | utf8 name | int64 data offset | int64 data length
+         * per column, 8 bytes aligned: data
+         *     int32 | int64 | float64: rows * width bytes
+         *     utf8: int64 offsets[rows + 1] relative to the end of the offsets, followed by the utf8 bytes
+         * }</pre>
+         * @throws IllegalArgumentException if, in {@link #to_binary}, a column exceeds {@link #MAX_COLUMN} bytes.
+         * */
+        public void save(String DIRECTORY, String fileName, Columns columns) {
+            Path filePath = pathOf(DIRECTORY, fileName);
+            final long start = System.nanoTime();
+            // oversized columns are rejected before the file is created.
+            final long[] lengths = this == to_binary ? lengths(columns) : null;
+            try {
+                try (ChannelWriter writer = new ChannelWriter(filePath, buffer_size)) {
+                    if (this == to_binary) saveBinary(writer, columns, lengths);
+                    else saveText(writer, columns);
+                }
+                if (Metrics.enabled) Metrics.exported(columns.rows(), Files.size(filePath), System.nanoTime() - start);
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+                return;
+            }
+            System.out.println(label() + " file created successfully at: " + filePath);
+        }
+
+        private void saveText(ChannelWriter writer, Columns columns) {
+            final int size = columns.size(), rows = columns.rows();
+            final Columns.Type[] types = columns.types.toArray(new Columns.Type[0]);
+            final Object[] data = columns.data.toArray();
+            final String[] names = columns.names.toArray(new String[0]);
+            if (writesHeader()) encodeRow(writer, null, names);
+            final byte separator = this == to_tsv ? (byte) '\t' : (byte) ',';
+            // JSON keys are encoded once.
+            final byte[][] keys = new byte[size][];
+            if (this == to_jsonl) {
+                Bytes key = new Bytes(32);
+                for (int c = 0; c < size; c++) {
+                    key.reset();
+                    jsonString(key, names[c]);
+                    keys[c] = key.put((byte) ':').toArray();
+                }
+            }
+            final Bytes row = new Bytes(256);
+            for (int r = 0; r < rows; r++) {
+                row.reset();
+                if (this == to_jsonl) row.put((byte) '{');
+                for (int c = 0; c < size; c++) {
+                    if (c != 0) row.put(separator);
+                    if (this == to_jsonl) row.put(keys[c]);
+                    switch (types[c]) {
+                        case int32 -> row.digits(((int[]) data[c])[r]);
+                        case int64 -> row.digits(((long[]) data[c])[r]);
+                        case float64 -> {
+                            double d = ((double[]) data[c])[r];
+                            if (this == to_jsonl && !Double.isFinite(d)) row.put(NULL);
+                            else row.digits(d);
+                        }
+                        case utf8 -> {
+                            String cell = ((String[]) data[c])[r];
+                            switch (this) {
+                                case to_csv -> csvCell(row, cell);
+                                case to_tsv -> tsvCell(row, cell);
+                                default -> jsonString(row, cell);
+                            }
+                        }
+                    }
+                }
+                switch (this) {
+                    case to_csv -> row.put(CRLF);
+                    case to_jsonl -> row.put((byte) '}').put((byte) '\n');
+                    default -> row.put((byte) '\n');
+                }
+                writer.put(row.buf, 0, row.len);
+                row.trim();
+            }
+        }
+
+        private static long align(long position) {return (position + 7) & ~7L;}
+
+        /**
+         * The maximum bytes of a {@link #to_binary} column, since {@link #read(Path)} maps each column at once.
+         * */
+        static final long MAX_COLUMN = Integer.MAX_VALUE;
+
+        /**
+         * @return the data length of every column in {@link #to_binary}.
+         * @throws IllegalArgumentException if a column exceeds {@link #MAX_COLUMN} bytes.
+         * */
+        private static long[] lengths(Columns columns) {
+            final int size = columns.size(), rows = columns.rows();
+            final long[] lengths = new long[size];
+            for (int c = 0; c < size; c++) {
+                Columns.Type type = columns.types.get(c);
+                long length = (long) rows * type.width;
+                if (type == Columns.Type.utf8) {
+                    length += type.width;
+                    for (String s : (String[]) columns.data.get(c)) length += utf8Length(s);
+                }
+                if (length > MAX_COLUMN) {
+                    throw new IllegalArgumentException("Column [" + columns.names.get(c) + "] of " + rows + " rows takes "
+                            + length + " bytes, more than the " + MAX_COLUMN + " bytes a binary column can hold");
+                }
+                lengths[c] = length;
+            }
+            return lengths;
+        }
+
+        private static void saveBinary(ChannelWriter writer, Columns columns, long[] lengths) {
+            final int size = columns.size(), rows = columns.rows();
+            final byte[][] names = new byte[size][];
+            long header = MAGIC.length + 4 + 4 + 8;
+            for (int c = 0; c < size; c++) {
+                names[c] = columns.names.get(c).getBytes(StandardCharsets.UTF_8);
+                header += 1 + 4 + names[c].length + 8 + 8;
+            }
+            final long[] offsets = new long[size];
+            long position = align(header);
+            for (int c = 0; c < size; c++) {
+                offsets[c] = position;
+                position = align(position + lengths[c]);
+            }
+            writer.order(ByteOrder.LITTLE_ENDIAN);
+            writer.put(MAGIC);
+            writer.putInt(VERSION).putInt(size).putLong(rows);
+            for (int c = 0; c < size; c++) {
+                writer.put(columns.types.get(c).id);
+                writer.putInt(names[c].length).put(names[c]);
+                writer.putLong(offsets[c]).putLong(lengths[c]);
+            }
+            for (int c = 0; c < size; c++) {
+                while (writer.size() < offsets[c]) writer.put((byte) 0);
+                Object data = columns.data.get(c);
+                switch (columns.types.get(c)) {
+                    case int32 -> {
+                        for (int v : (int[]) data) writer.putInt(v);
+                    }
+                    case int64 -> {
+                        for (long v : (long[]) data) writer.putLong(v);
+                    }
+                    case float64 -> {
+                        for (double v : (double[]) data) writer.putDouble(v);
+                    }
+                    case utf8 -> {
+                        String[] strings = (String[]) data;
+                        long offset = 0;
+                        writer.putLong(offset);
+                        for (String s : strings) writer.putLong(offset += utf8Length(s));
+                        for (String s : strings) if (s != null) writer.utf8(s, 0, s.length());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the number of bytes {@link ByteSink#utf8(CharSequence, int, int)} writes for {@code s}, 0 if null.
+         * */
+        static long utf8Length(String s) {
+            if (s == null) return 0;
+            long length = 0;
+            for (int i = 0, l = s.length(); i < l; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) length++;
+                else if (c < 0x800) length += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < l && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) length++;
+                else length += 3;
+            }
+            return length;
+        }
+
+        private static final int HEADER_WINDOW = 1 << 20;
+
+        /**
+         * @return a window of the header of at least {@code bytes} from {@code position}, and up to {@value HEADER_WINDOW} bytes.
+         * */
+        private static ByteBuffer header(FileChannel channel, long position, long fileSize, long bytes, Path path) throws IOException {
+            if (position + bytes > fileSize) throw new IOException("Truncated header: " + path);
+            if (bytes > Integer.MAX_VALUE) throw new IOException("Header entry of " + bytes + " bytes: " + path);
+            long window = Math.max(bytes, Math.min(fileSize - position, HEADER_WINDOW));
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, window).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Memory-maps a file saved via {@link #to_binary}.
+         * <p> The returned {@link Columns.Mapped} must be closed.
+         * @throws IOException if the file cannot be read or is not a {@link #to_binary} file.
+         * */
+        public static Columns.Mapped read(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long fileSize = channel.size(), base = 0;
+                ByteBuffer head = header(channel, 0, fileSize, MAGIC.length + 4 + 4 + 8, path);
+                byte[] magic = new byte[MAGIC.length];
+                head.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a binary columnar file: " + path);
+                int version = head.getInt();
+                if (version != VERSION) throw new IOException("Unsupported version " + version + ": " + path);
+                int size = head.getInt();
+                if (size < 0) throw new IOException("Corrupt column count (" + size + "): " + path);
+                long rows = head.getLong();
+                if (rows < 0 || rows > Integer.MAX_VALUE) throw new IOException("Unsupported row count (" + rows + "): " + path);
+                String[] names = new String[size];
+                Columns.Type[] types = new Columns.Type[size];
+                ByteBuffer[] data = new ByteBuffer[size];
+                for (int c = 0; c < size; c++) {
+                    if (head.remaining() < 1 + 4) head = header(channel, base += head.position(), fileSize, 1 + 4, path);
+                    Columns.Type type = Columns.Type.of(head.get());
+                    int nameLength = head.getInt();
+                    if (nameLength < 0) throw new IOException("Corrupt name length (" + nameLength + ") of column " + c + ": " + path);
+                    if (head.remaining() < nameLength + 8L + 8) head = header(channel, base += head.position(), fileSize, nameLength + 8L + 8, path);
+                    byte[] name = new byte[nameLength];
+                    head.get(name);
+                    names[c] = new String(name, StandardCharsets.UTF_8);
+                    if (type == null) throw new IOException("Unknown type of column [" + names[c] + "]: " + path);
+                    types[c] = type;
+                    long offset = head.getLong(), length = head.getLong();
+                    if (offset < 0 || length < 0 || offset + length > fileSize) throw new IOException("Truncated column [" + names[c] + "]: " + path);
+                    if (length > MAX_COLUMN) throw new IOException("Column [" + names[c] + "] exceeds " + MAX_COLUMN + " bytes: " + path);
+                    long expected = types[c] == Columns.Type.utf8 ? (rows + 1) * types[c].width : rows * types[c].width;
+                    if (types[c] == Columns.Type.utf8 ? length < expected : length != expected) {
+                        throw new IOException("Column [" + names[c] + "] length (" + length + ") does not match the rows (" + rows + "): " + path);
+                    }
+                    data[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                return new Columns.Mapped(channel, (int) rows, names, types, data);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Target of encoders shared by {@link Bytes} and {@link ChannelWriter}.
+     * */
+    interface ByteSink {
+        ByteSink put(byte b);
+
+        ByteSink put(byte[] bytes);
+
+        ByteSink put(byte[] bytes, int offset, int length);
+
+        /**
+         * UTF-8 encodes the chars of {@code s} from {@code begin} (inclusive) to {@code end} (exclusive).
+         * */
+        ByteSink utf8(CharSequence s, int begin, int end);
+    }
+
+    /**
+     * Encodes bytes into a direct {@link ByteBuffer} that is written through a {@link FileChannel} every time it fills up.
+     * <p> Unchecked: {@link IOException}s thrown while writing are rethrown as {@link UncheckedIOException}.
+     * */
+    static final class ChannelWriter implements ByteSink, Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        ChannelWriter(Path path, int bufferSize) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), bufferSize);
+        }
+
+        ChannelWriter(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        /**
+         * Makes sure at least {@code bytes} can be put without draining, {@code bytes} must not exceed the buffer capacity.
+         * */
+        void ensure(int bytes) {
+            if (buffer.remaining() < bytes) drain();
+        }
+
+        @Override
+        public ChannelWriter put(byte b) {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put(b);
+            return this;
+        }
+
+        @Override
+        public ChannelWriter put(byte[] bytes) {
+            return put(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public ChannelWriter put(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) drain();
+                int n = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+            return this;
+        }
+
+        ChannelWriter order(ByteOrder order) {
+            buffer.order(order);
+            return this;
+        }
+
+        ChannelWriter putInt(int i) {
+            ensure(4);
+            buffer.putInt(i);
+            return this;
+        }
+
+        ChannelWriter putLong(long l) {
+            ensure(8);
+            buffer.putLong(l);
+            return this;
+        }
+
+        ChannelWriter putDouble(double d) {
+            ensure(8);
+            buffer.putDouble(d);
+            return this;
+        }
+
+        @Override
+        public ChannelWriter utf8(CharSequence s, int begin, int end) {
+            final ByteBuffer buffer = this.buffer;
+            for (int i = begin; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (!buffer.hasRemaining()) drain();
+                    buffer.put((byte) c);
+                    continue;
+                }
+                ensure(4);
+                if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xF0 | (cp >> 18)));
+                    buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (cp & 0x3F)));
+                } else if (Character.isSurrogate(c)) buffer.put((byte) '?');
+                else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Writes every pending byte into the channel.
+         * */
+        void drain() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) written += channel.write(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        /**
+         * @return the number of bytes written plus the ones pending.
+         * */
+        long size() {return written + buffer.position();}
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * File Editor for the given formats:
+     * <ul>
+     *     <li>
+     *         {@link #HTML},
+     *     </li>
+     *     <li>
+     *         {@link #TXT},
+     *     </li>
+     *     <li>
+     *         {@link #XML},
+     *     </li>
+     * </ul>
+     * <p> With methods such as:
+     * <ul>
+     *     <li>{@link #editLine(String, String, Line...)}</li>
+     *     <li>{@link #editLineMapped(String, String, Line...)}</li>
+     *     <li>{@link #readLine(String, String, int)}</li>
+     *     <li>{@link #apply(String, String, Edits, Mode)}</li>
+     * </ul>
+     * */
+    public enum Editor {
+        HTML(".html"),
+        TXT(".txt"),
+        XML(".xml");
+
+        private final String extension;
+
+        Editor(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
          * The object to define the line that will be swapped from the original file.
-         * @param number the line number to be changed
+         * @param number the line number to be changed (0 based)
          * @param content the new content to be swapped in the specified line.
          * */
-        public record Line(int number, String content) {}
+        public record Line(int number, String content) {}
+
+        /**
+         * @return a copy of {@code lines} in ascending order of {@link Line#number()},
+         * lines with the same number keep their relative order, so the last one wins.
+         * */
+        static Line[] sorted(Line[] lines) {
+            Line[] sorted = lines.clone();
+            Arrays.sort(sorted, Comparator.comparingInt(Line::number));
+            return sorted;
+        }
+
+        /**
+         * Edits specific lines in a file and writes the modified content to a new file with "_copy" appended to the original file name.
+         * <p>
+         * This method reads the original file line by line, replaces the specified lines with new content, and writes the result to a new file.
+         * The new file will have the same name as the original file with "_copy" appended before the file extension.
+         * </p>
+         *
+         * @param path      the directory path where the file is located
+         * @param fileName  the name of the file without the extension
+         * @param lines     varargs parameter of {@link Line} records, each containing the line number and new content,
+         *                  in any order.
+         *
+         * <p>
+         * Example usage:
+         * </p>
+         * <pre>{@code
+         * public static void main(String[] args) {
+         *     Editor editor = Editor.HTML;
+         *     editor.editLine("path/to/your", "file",
+         *         new Line(10, "<newTag>New Content</newTag>"),
+         *         new Line(20, "<anotherTag>Another Content</anotherTag>")
+         *     );
+         * }
+         * }</pre>
+         */
+        public void editLine(String path, String fileName, Line... lines) {
+            Path filePath = Paths.get(path, fileName + this.extension);
+            Path newFilePath = Paths.get(path, fileName + "_copy" + this.extension);
+
+            lines = sorted(lines);
+            final long start = System.nanoTime();
+            int edited = 0;
+
+            try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(newFilePath, StandardCharsets.UTF_8)) {
+
+                String line;
+                int lineNumber = 0;
+
+                int curL = 0;
+                while (curL < lines.length && lines[curL].number < 0) curL++;
+                Line line1;
+                while ((line = reader.readLine()) != null) {
+                    boolean replaced = false;
+                    while (curL < lines.length && lineNumber == (line1 = lines[curL]).number) {
+                        line = line1.content;
+                        replaced = true;
+                        curL++;
+                    }
+                    if (replaced) edited++;
+                    writer.write(line);
+                    writer.newLine();
+                    lineNumber++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            edited(edited, filePath, newFilePath, start);
+        }
+
+        private static void edited(long lines, Path source, Path target, long start) {
+            if (!Metrics.enabled) return;
+            try {
+                Metrics.edited(lines, Files.size(source), Files.size(target), System.nanoTime() - start);
+            } catch (IOException ignored) {
+                // deleted in between, not accounted.
+            }
+        }
+
+        /**
+         * Zero-copy version of {@link #editLine(String, String, Line...)}, for large files where only a few lines change.
+         * <p> The original file is scanned memory-mapped (8 bytes at a time) only up to the last edited line,
+         * to find the byte offsets of the target lines.
+         * Unchanged byte ranges are copied via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+         * so only the replacement content is encoded and written, and no {@link String} is created per line.
+         * <p> Differences with {@link #editLine(String, String, Line...)}:
+         * <ul>
+         *     <li>
+         *         Lines are terminated by {@code '\n'} or {@code "\r\n"} only, a lone {@code '\r'} is not a line terminator.
+         *     </li>
+         *     <li>
+         *         The original line terminators are preserved byte by byte,
+         *         instead of being replaced by the {@link System#lineSeparator()}.
+         *     </li>
+         * </ul>
+         * <p> Lines may be given in any order, lines beyond the end of the file are ignored.
+         * <p> When the line index cache is enabled (see {@link #setIndexCacheSize(int)}) the offsets of the lines
+         * are looked up instead of scanned, and the index of the "_copy" file is derived from the original's,
+         * so that editing the copy again does not rescan it.
+         * @param path      the directory path where the file is located
+         * @param fileName  the name of the file without the extension
+         * @param lines     varargs parameter of {@link Line} records, each containing the line number and new content
+         * */
+        public void editLineMapped(String path, String fileName, Line... lines) {
+            Path filePath = Paths.get(path, fileName + this.extension);
+            Path newFilePath = Paths.get(path, fileName + "_copy" + this.extension);
+            lines = sorted(lines);
+            final long begin = System.nanoTime();
+            int applied = 0;
+
+            try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(newFilePath,
+                         StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final long size = source.size();
+                final LineIndex index = index_capacity > 0 ? LineIndex.of(filePath, source) : null;
+                final LineScanner scanner = index == null ? new LineScanner(source, size, LineScanner.WINDOW) : null;
+                final Bytes content = new Bytes(256);
+                // Edited lines, the change in their length and the line starts within their contents, to derive the index of the copy.
+                final int[] edited = index == null ? null : new int[lines.length];
+                final long[] deltas = index == null ? null : new long[lines.length];
+                long[] inserted = index == null ? null : new long[8];
+                int edits = 0, insertions = 0;
+                long copied = 0, shift = 0;
+                for (int i = 0; i < lines.length; i++) {
+                    Line line = lines[i];
+                    if (line.number < 0 || (i + 1 < lines.length && lines[i + 1].number == line.number)) continue;
+                    long start, end;
+                    if (index != null) {
+                        if (line.number >= index.lines()) break;
+                        start = index.start(line.number);
+                        end = index.end(line.number, source);
+                    } else {
+                        if (!scanner.seek(line.number)) break;
+                        start = scanner.start;
+                        end = scanner.end;
+                    }
+                    transfer(source, copied, start - copied, target);
+                    content.reset();
+                    content.utf8(line.content);
+                    write(target, content);
+                    copied = end;
+                    applied++;
+                    if (index != null) {
+                        final long at = start + shift;
+                        for (int k = 0; k < content.len; k++) {
+                            if (content.buf[k] != '\n') continue;
+                            if (insertions == inserted.length) inserted = Arrays.copyOf(inserted, insertions << 1);
+                            inserted[insertions++] = at + k + 1;
+                        }
+                        edited[edits] = line.number;
+                        shift += deltas[edits++] = content.len - (end - start);
+                    }
+                }
+                transfer(source, copied, size - copied, target);
+                content.trim();
+                if (index != null) {
+                    target.force(false);
+                    LineIndex.put(newFilePath, index.shift(edited, deltas, edits, inserted, insertions, newFilePath));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            edited(applied, filePath, newFilePath, begin);
+        }
+
+        /**
+         * Reads a single line, without its terminator ({@code '\n'} or {@code "\r\n"}).
+         * <p> The first call builds an index with the offsets of every line (a single memory-mapped pass),
+         * subsequent calls cost a single positional read for as long as the index is cached
+         * (see {@link #setIndexCacheSize(int)}) or persisted (see {@link #setSidecar(boolean)}),
+         * and the file keeps its size and last modified time.
+         * @param path      the directory path where the file is located
+         * @param fileName  the name of the file without the extension
+         * @param number    the line number (0 based)
+         * @return the line, or null if the file has no such line.
+         * */
+        public String readLine(String path, String fileName, int number) {
+            Path filePath = Paths.get(path, fileName + this.extension);
+            try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                LineIndex index = LineIndex.of(filePath, source);
+                if (number < 0 || number >= index.lines()) return null;
+                long start = index.start(number);
+                ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(index.start(number + 1) - start));
+                while (bytes.hasRemaining()) {
+                    if (source.read(bytes, start + bytes.position()) < 0) throw new EOFException("Unexpected end of file: " + filePath);
+                }
+                int length = bytes.limit();
+                if (length > 0 && bytes.get(length - 1) == '\n') length--;
+                if (length > 0 && bytes.get(length - 1) == '\r') length--;
+                return new String(bytes.array(), 0, length, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        private static volatile int index_capacity = 0;
+        private static volatile boolean sidecar;
+
+        /**
+         * Sets the number of line indexes kept in memory, least recently used indexes are evicted first.
+         * <p> Each index holds 8 bytes per line of its file, and is built by scanning the whole file once.
+         * <p> 0 disables the cache, and {@link #editLineMapped(String, String, Line...)} falls back to scanning
+         * only up to the last edited line.
+         * <p> Default: 0.
+         * */
+        public static void setIndexCacheSize(int indexes) {
+            if (indexes < 0) throw new IllegalArgumentException("indexes must be >= 0, was: " + indexes);
+            synchronized (LineIndex.cache) {
+                index_capacity = indexes;
+                LineIndex.evict();
+            }
+        }
+
+        public static int getIndexCacheSize() {return index_capacity;}
+
+        /**
+         * If true, line indexes are also saved next to their file (as {@code <file>.lines}),
+         * and reloaded if still valid, so that the index survives the process.
+         * <p> Default: false.
+         * */
+        public static void setSidecar(boolean enabled) {sidecar = enabled;}
+
+        public static boolean isSidecar() {return sidecar;}
+
+        /**
+         * Removes all cached line indexes, sidecar files are kept.
+         * */
+        public static void clearIndexCache() {
+            synchronized (LineIndex.cache) {
+                LineIndex.cache.clear();
+            }
+        }
 
         /**
-         * Edits specific lines in a file and writes the modified content to a new file with "_copy" appended to the original file name.
-         * <p>
-         * This method reads the original file line by line, replaces the specified lines with new content, and writes the result to a new file.
-         * The new file will have the same name as the original file with "_copy" appended before the file extension.
-         * </p>
-         *
-         * @param path      the directory path where the file is located
-         * @param fileName  the name of the file without the extension
-         * @param lines     varargs parameter of {@link Line} records, each containing the line number and new content
-         *
-         * <p>
-         * Example usage:
-         * </p>
+         * Offsets of the start of every line of a file, valid while the file keeps its {@link #size} and {@link #modified} time.
+         * <p> {@code starts} has one extra entry, the size of the file.
+         * */
+        static final class LineIndex {
+            static final LinkedHashMap<Path, LineIndex> cache = new LinkedHashMap<>(16, 0.75f, true);
+            private static final byte[] MAGIC = {'P', 'L', 'I', 'X'};
+            private static final int VERSION = 1, HEADER = 4 + 4 + 8 + 8 + 4;
+
+            final long size, modified;
+            private final long[] starts;
+
+            LineIndex(long size, long modified, long[] starts) {
+                this.size = size;
+                this.modified = modified;
+                this.starts = starts;
+            }
+
+            int lines() {return starts.length - 1;}
+
+            long start(int line) {return starts[line];}
+
+            /**
+             * @return the end of the content of {@code line}, excluding its terminator.
+             * */
+            long end(int line, FileChannel channel) throws IOException {
+                long start = starts[line], end = starts[line + 1];
+                ByteBuffer tail = ByteBuffer.allocate((int) Math.min(2, end - start));
+                channel.read(tail, end - tail.capacity());
+                int length = tail.position();
+                if (length > 0 && tail.get(length - 1) == '\n') {
+                    end--;
+                    if (length > 1 && tail.get(length - 2) == '\r') end--;
+                }
+                return end;
+            }
+
+            /**
+             * @return the index of a copy of the file where each {@code lines[i]} changed its length by {@code deltas[i]},
+             * and where new lines start at the {@code inserted} offsets of the copy (after each {@code '\n'} of a replacement).
+             * */
+            LineIndex shift(int[] lines, long[] deltas, int edits, long[] inserted, int insertions, Path copy) throws IOException {
+                long[] shifted = new long[starts.length];
+                long shift = 0;
+                int from = 0;
+                for (int e = 0; e < edits; e++) {
+                    int to = lines[e] + 1;
+                    for (int i = from; i < to; i++) shifted[i] = starts[i] + shift;
+                    shift += deltas[e];
+                    from = to;
+                }
+                for (int i = from; i < starts.length; i++) shifted[i] = starts[i] + shift;
+                if (insertions == 0) return new LineIndex(shifted[shifted.length - 1], modified(copy), shifted);
+                long[] merged = new long[shifted.length + insertions];
+                int n = 0, j = 0;
+                for (long start : shifted) {
+                    while (j < insertions && inserted[j] < start) merged[n++] = inserted[j++];
+                    merged[n++] = start;
+                }
+                // The remaining insertions are at the end of the file, where no line starts.
+                return new LineIndex(shifted[shifted.length - 1], modified(copy), n == merged.length ? merged : Arrays.copyOf(merged, n));
+            }
+
+            private static long modified(Path file) throws IOException {
+                return Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+            }
+
+            private static Path key(Path file) {return file.toAbsolutePath().normalize();}
+
+            private static Path sidecarOf(Path file) {return file.resolveSibling(file.getFileName() + ".lines");}
+
+            /**
+             * Looks up the cache, then the sidecar file if enabled, and builds the index on a miss.
+             * */
+            static LineIndex of(Path file, FileChannel channel) throws IOException {
+                final long size = channel.size(), modified = modified(file);
+                final Path key = key(file);
+                LineIndex index;
+                synchronized (cache) {
+                    index = cache.get(key);
+                }
+                if (index != null && index.size == size && index.modified == modified) return index;
+                index = sidecar ? load(sidecarOf(file), size, modified) : null;
+                if (index == null) {
+                    index = build(channel, size, modified);
+                    if (sidecar) store(sidecarOf(file), index);
+                }
+                cache(key, index);
+                return index;
+            }
+
+            private static void cache(Path key, LineIndex index) {
+                if (index_capacity == 0) return;
+                synchronized (cache) {
+                    cache.put(key, index);
+                    evict();
+                }
+            }
+
+            /**
+             * Caches the index of a file that was just written, and saves its sidecar if enabled.
+             * */
+            static void put(Path file, LineIndex index) throws IOException {
+                cache(key(file), index);
+                if (sidecar) store(sidecarOf(file), index);
+            }
+
+            static void evict() {
+                assert Thread.holdsLock(cache);
+                Iterator<LineIndex> eldest = cache.values().iterator();
+                for (int excess = cache.size() - index_capacity; excess > 0; excess--) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+
+            static LineIndex build(FileChannel channel, long size, long modified) throws IOException {
+                long[] starts = new long[64];
+                int lines = 0;
+                if (size > 0) {
+                    LineScanner scanner = new LineScanner(channel, size, LineScanner.WINDOW);
+                    starts[lines++] = 0;
+                    long newLine = -1;
+                    while ((newLine = scanner.indexOf(newLine + 1)) >= 0 && newLine + 1 < size) {
+                        if (lines + 1 == starts.length) starts = Arrays.copyOf(starts, starts.length << 1);
+                        starts[lines++] = newLine + 1;
+                    }
+                }
+                starts = Arrays.copyOf(starts, lines + 1);
+                starts[lines] = size;
+                return new LineIndex(size, modified, starts);
+            }
+
+            /**
+             * Layout (little-endian): "PLIX" | int32 version | int64 size | int64 modified | int32 lines | int64 starts[lines + 1]
+             * */
+            static void store(Path path, LineIndex index) throws IOException {
+                try (ChannelWriter writer = new ChannelWriter(path, 1 << 16)) {
+                    writer.order(ByteOrder.LITTLE_ENDIAN);
+                    writer.put(MAGIC);
+                    writer.putInt(VERSION).putLong(index.size).putLong(index.modified).putInt(index.lines());
+                    for (long start : index.starts) writer.putLong(start);
+                }
+            }
+
+            /**
+             * @return the stored index if it matches {@code size} and {@code modified}, null otherwise.
+             * */
+            static LineIndex load(Path path, long size, long modified) throws IOException {
+                if (!Files.isRegularFile(path)) return null;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    if (channel.size() < HEADER) return null;
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+                    byte[] magic = new byte[MAGIC.length];
+                    buffer.get(magic);
+                    if (!Arrays.equals(magic, MAGIC) || buffer.getInt() != VERSION
+                            || buffer.getLong() != size || buffer.getLong() != modified) return null;
+                    int lines = buffer.getInt();
+                    if (lines < 0 || buffer.remaining() != (lines + 1L) * Long.BYTES) return null;
+                    long[] starts = new long[lines + 1];
+                    buffer.asLongBuffer().get(starts);
+                    return new LineIndex(size, modified, starts);
+                }
+            }
+        }
+
+        static void transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+            while (count > 0) {
+                long transferred = source.transferTo(position, count, target);
+                if (transferred <= 0) throw new EOFException("Unexpected end of file at: " + position);
+                position += transferred;
+                count -= transferred;
+            }
+        }
+
+        static void write(FileChannel target, Bytes bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.buf, 0, bytes.len);
+            while (buffer.hasRemaining()) target.write(buffer);
+        }
+
+        /**
+         * Forward-only cursor over the lines of a file, mapped in windows of at most {@link #WINDOW} bytes.
+         * <p> After a successful {@link #seek(int)}, [{@link #start}, {@link #end}) are the byte offsets
+         * of the line content, excluding its terminator.
+         * */
+        static final class LineScanner {
+            static final int WINDOW = 1 << 27;
+            private static final long NEW_LINES = 0x0A0A0A0A0A0A0A0AL, LOWS = 0x0101010101010101L, HIGHS = 0x8080808080808080L;
+
+            private final FileChannel channel;
+            private final long size;
+            private final int windowSize;
+            private ByteBuffer window;
+            private long base, limit;
+
+            /**
+             * The line at {@link #start}.
+             * */
+            int line;
+            long start, end;
+            /**
+             * Offset of the {@code '\n'} terminating {@link #line}, -1 if the line ends at the end of the file,
+             * -2 if not yet known.
+             * */
+            private long newLine = -2;
+
+            LineScanner(FileChannel channel, long size, int windowSize) {
+                this.channel = channel;
+                this.size = size;
+                this.windowSize = windowSize;
+            }
+
+            /**
+             * Moves forward to the line {@code number}.
+             * @return false if the file has no such line, or if it is behind the current line.
+             * */
+            boolean seek(int number) throws IOException {
+                if (number < line || size == 0) return false;
+                while (line < number) {
+                    long next = newLine == -2 ? indexOf(start) : newLine;
+                    if (next < 0 || next + 1 >= size) return false;
+                    start = next + 1;
+                    newLine = -2;
+                    line++;
+                }
+                if (newLine == -2) newLine = indexOf(start);
+                if (newLine < 0) end = size;
+                else end = newLine > start && byteAt(newLine - 1) == '\r' ? newLine - 1 : newLine;
+                return true;
+            }
+
+            private void map(long from) throws IOException {
+                base = from;
+                limit = Math.min(size, from + windowSize);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, base, limit - base).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            private byte byteAt(long position) throws IOException {
+                if (position < base || position >= limit) map(position);
+                return window.get((int) (position - base));
+            }
+
+            /**
+             * @return the offset of the first {@code '\n'} at or after {@code from}, -1 if none.
+             * */
+            long indexOf(long from) throws IOException {
+                while (from < size) {
+                    if (from < base || from >= limit) map(from);
+                    int i = (int) (from - base);
+                    final int l = (int) (limit - base);
+                    for (; i + Long.BYTES <= l; i += Long.BYTES) {
+                        // The lowest flagged byte is exact, borrows only flag bytes above it.
+                        long x = window.getLong(i) ^ NEW_LINES;
+                        long found = (x - LOWS) & ~x & HIGHS;
+                        if (found != 0) return base + i + (Long.numberOfTrailingZeros(found) >>> 3);
+                    }
+                    for (; i < l; i++) if (window.get(i) == '\n') return base + i;
+                    from = limit;
+                }
+                return -1;
+            }
+        }
+
+        /**
+         * Whether {@link #apply(String, String, Edits, Mode)} writes its result next to the original or replaces it.
+         * */
+        public enum Mode {
+            /**
+             * Writes the result to a new file with "_copy" appended to the file name, as {@link #editLine(String, String, Line...)}.
+             * */
+            copy,
+            /**
+             * Writes the result to a temporary file in the same directory, and atomically moves it over the original,
+             * readers see either the original file or the edited one, never a partial file.
+             * */
+            in_place
+        }
+
+        /**
+         * A set of operations applied by {@link #apply(String, String, Edits, Mode)} in a single streaming pass.
+         * <ul>
+         *     <li>
+         *         Line operations ({@link #set(int, String)}, {@link #insert(int, String)}, {@link #delete(int, int)})
+         *         refer to the line numbers (0 based) of the original file.
+         *     </li>
+         *     <li>
+         *         Literal replacements ({@link #replace(String, String)}) are matched all at once with an Aho-Corasick automaton
+         *         over the UTF-8 bytes of each line, the leftmost-longest match wins and matches do not overlap.
+         *     </li>
+         *     <li>
+         *         Regex replacements ({@link #replaceAll(Pattern, String)}) are applied in order after the literal ones,
+         *         with the semantics of {@link Matcher#replaceAll(String)}.
+         *         Lines are only decoded into {@link String}s when regex replacements are present.
+         *     </li>
+         * </ul>
+         * <p> Replacements never span lines, and do not apply to lines written by {@link #set(int, String)} or {@link #insert(int, String)}.
+         * Inserted lines end with the terminator of the line they precede.
+         * <p> Memory is bounded by the longest line.
+         * <p> Example usage:
          * <pre>{@code
-         * public static void main(String[] args) {
-         *     Editor editor = Editor.HTML;
-         *     editor.editLine("path/to/your", "file",
-         *         new Line(10, "<newTag>New Content</newTag>"),
-         *         new Line(20, "<anotherTag>Another Content</anotherTag>")
-         *     );
-         * }
+         * Editor.HTML.apply("path/to/your", Editor.Mode.in_place,
+         *         new Editor.Edits()
+         *                 .replace("<b>", "<strong>")
+         *                 .replace("</b>", "</strong>")
+         *                 .replaceAll(Pattern.compile("id=\"(\\d+)\""), "data-id=\"$1\"")
+         *                 .insert(0, "<!-- generated -->")
+         *                 .delete(10, 20),
+         *         "report_1", "report_2", "report_3"
+         * );
          * }</pre>
-         */
-        public void editLine(String path, String fileName, Line... lines) {
-            Path filePath = Paths.get(path, fileName + this.extension);
-            Path newFilePath = Paths.get(path, fileName + "_copy" + this.extension);
+         * */
+        public static final class Edits {
+            private static final byte INSERT = 0, SET = 1, DELETE = 2;
 
-            try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
-                 BufferedWriter writer = Files.newBufferedWriter(newFilePath, StandardCharsets.UTF_8)) {
+            private record Op(int line, int end, byte kind, byte[] content) {}
 
-                String line;
-                int lineNumber = 0;
+            private final List<Op> ops = new ArrayList<>();
+            private final List<byte[]> literals = new ArrayList<>(), replacements = new ArrayList<>();
+            private final List<Pattern> regexes = new ArrayList<>();
+            private final List<String> regexReplacements = new ArrayList<>();
 
-                int curL = 0, prevLN = -1;
-                Line line1;
-                while ((line = reader.readLine()) != null) {
-                    while (curL < lines.length && lineNumber == (line1 = lines[curL]).number) {
-                        assert prevLN < line1.number : "Lines are not in ascending order";
-                        prevLN = line1.number;
-                        line = line1.content;
-                        curL++;
+            private static byte[] utf8(String content) {
+                Bytes bytes = new Bytes(content.length() + 8);
+                bytes.utf8(content);
+                return bytes.toArray();
+            }
+
+            private static void checkLine(int line) {
+                if (line < 0) throw new IllegalArgumentException("line must be >= 0, was: " + line);
+            }
+
+            /**
+             * Replaces the content of {@code line}.
+             * */
+            public Edits set(int line, String content) {
+                checkLine(line);
+                ops.add(new Op(line, line + 1, SET, utf8(content)));
+                return this;
+            }
+
+            /**
+             * Inserts a line before {@code line}, lines past the end of the file are appended at the end.
+             * */
+            public Edits insert(int line, String content) {
+                checkLine(line);
+                ops.add(new Op(line, line, INSERT, utf8(content)));
+                return this;
+            }
+
+            public Edits delete(int line) {return delete(line, line + 1);}
+
+            /**
+             * Deletes the lines in [{@code from}, {@code to}).
+             * */
+            public Edits delete(int from, int to) {
+                checkLine(from);
+                if (to < from) throw new IllegalArgumentException("to (" + to + ") must be >= from (" + from + ")");
+                ops.add(new Op(from, to, DELETE, null));
+                return this;
+            }
+
+            /**
+             * Replaces every occurrence of {@code literal}, which must not be empty nor contain line breaks.
+             * */
+            public Edits replace(String literal, String replacement) {
+                if (literal.isEmpty() || literal.indexOf('\n') >= 0) {
+                    throw new IllegalArgumentException("literal must not be empty nor contain line breaks: [" + literal + "]");
+                }
+                literals.add(utf8(literal));
+                replacements.add(utf8(replacement));
+                return this;
+            }
+
+            public Edits replaceAll(String regex, String replacement) {return replaceAll(Pattern.compile(regex), replacement);}
+
+            public Edits replaceAll(Pattern regex, String replacement) {
+                regexes.add(regex);
+                regexReplacements.add(replacement);
+                return this;
+            }
+
+            Program compile() {
+                Op[] sorted = ops.toArray(new Op[0]);
+                Arrays.sort(sorted, Comparator.comparingInt(Op::line));
+                return new Program(
+                        sorted,
+                        literals.isEmpty() ? null : new Literals(literals.toArray(new byte[0][]), replacements.toArray(new byte[0][])),
+                        regexes.toArray(new Pattern[0]),
+                        regexReplacements.toArray(new String[0])
+                );
+            }
+        }
+
+        /**
+         * Immutable, compiled {@link Edits}, shared by the files of a batch.
+         * */
+        record Program(Edits.Op[] ops, Literals literals, Pattern[] regexes, String[] regexReplacements) {}
+
+        /**
+         * Aho-Corasick automaton over bytes, with the failure links resolved into a dense transition table.
+         * */
+        static final class Literals {
+            /**
+             * {@code next[state << 8 | byte]}, 1 KiB per state.
+             * */
+            private final int[] next;
+            /**
+             * The pattern ending at each state, -1 if none.
+             * */
+            private final int[] output;
+            /**
+             * The closest state on the failure chain with an output, 0 if none.
+             * */
+            private final int[] dict;
+            private final int[] lengths;
+            final byte[][] replacements;
+
+            Literals(byte[][] patterns, byte[][] replacements) {
+                this.replacements = replacements;
+                this.lengths = new int[patterns.length];
+                int capacity = 1;
+                for (byte[] pattern : patterns) capacity += pattern.length;
+                int[] next = new int[capacity << 8], output = new int[capacity], fail = new int[capacity], dict = new int[capacity];
+                Arrays.fill(output, -1);
+                int states = 1;
+                for (int p = 0; p < patterns.length; p++) {
+                    int state = 0;
+                    for (byte b : patterns[p]) {
+                        int edge = state << 8 | (b & 0xFF);
+                        if (next[edge] == 0) next[edge] = states++;
+                        state = next[edge];
                     }
-                    writer.write(line);
-                    writer.newLine();
-                    lineNumber++;
+                    // Duplicates: the last one wins.
+                    output[state] = p;
+                    lengths[p] = patterns[p].length;
                 }
-            } catch (IOException e) {
+                int[] queue = new int[states];
+                int head = 0, tail = 0;
+                for (int b = 0; b < 256; b++) if (next[b] != 0) queue[tail++] = next[b];
+                while (head < tail) {
+                    int state = queue[head++];
+                    int f = fail[state];
+                    dict[state] = output[f] >= 0 ? f : dict[f];
+                    for (int b = 0; b < 256; b++) {
+                        int edge = state << 8 | b, child = next[edge];
+                        if (child != 0) {
+                            fail[child] = next[f << 8 | b];
+                            queue[tail++] = child;
+                        } else next[edge] = next[f << 8 | b];
+                    }
+                }
+                this.next = Arrays.copyOf(next, states << 8);
+                this.output = Arrays.copyOf(output, states);
+                this.dict = Arrays.copyOf(dict, states);
+            }
+
+            /**
+             * Records in {@code longest[start - from]} and {@code pattern[start - from]} the longest pattern starting at each position.
+             * @return true if any pattern matched.
+             * */
+            boolean match(byte[] bytes, int from, int to, int[] longest, int[] pattern) {
+                boolean matched = false;
+                for (int i = from, state = 0; i < to; i++) {
+                    state = next[state << 8 | (bytes[i] & 0xFF)];
+                    for (int s = output[state] >= 0 ? state : dict[state]; s != 0; s = dict[s]) {
+                        int p = output[s], length = lengths[p], start = i - from - length + 1;
+                        if (length > longest[start]) {
+                            longest[start] = length;
+                            pattern[start] = p;
+                        }
+                        matched = true;
+                    }
+                }
+                return matched;
+            }
+        }
+
+        private static final byte[] LF = {'\n'}, CR_LF = {'\r', '\n'}, NO_TERMINATOR = {};
+        private static final int EDIT_BUFFER = 1 << 16;
+
+        /**
+         * The state of a {@link Program} applied to a single file.
+         * */
+        static final class Run {
+            private final Program program;
+            private final ByteSink out;
+            private final Bytes carry = new Bytes(256), text = new Bytes(256);
+            private final Matcher[] matchers;
+            private int[] longest = new int[256], pattern = new int[256];
+            private int line, op, deleteUntil;
+            /**
+             * Lines inserted, deleted, set or modified by a replacement.
+             * */
+            int changed;
+            private byte[] lastTerminator = LF;
+            /**
+             * True if the last line written had no terminator.
+             * */
+            private boolean open;
+
+            Run(Program program, ByteSink out) {
+                this.program = program;
+                this.out = out;
+                this.matchers = new Matcher[program.regexes().length];
+                for (int i = 0; i < matchers.length; i++) matchers[i] = program.regexes()[i].matcher("");
+            }
+
+            void run(FileChannel in) throws IOException {
+                final ByteBuffer buffer = ByteBuffer.allocate(EDIT_BUFFER);
+                final byte[] bytes = buffer.array();
+                while (in.read(buffer) >= 0) {
+                    final int limit = buffer.position();
+                    int from = 0;
+                    for (int i = 0; i < limit; i++) {
+                        if (bytes[i] != '\n') continue;
+                        if (carry.len > 0) {
+                            carry.put(bytes, from, i + 1 - from);
+                            line(carry.buf, 0, carry.len);
+                            carry.reset();
+                        } else line(bytes, from, i + 1);
+                        from = i + 1;
+                    }
+                    if (from < limit) carry.put(bytes, from, limit - from);
+                    buffer.clear();
+                }
+                if (carry.len > 0) line(carry.buf, 0, carry.len);
+                finish();
+            }
+
+            private void line(byte[] bytes, int from, int to) {
+                final byte[] terminator;
+                if (bytes[to - 1] != '\n') terminator = NO_TERMINATOR;
+                else terminator = to - 2 >= from && bytes[to - 2] == '\r' ? CR_LF : LF;
+                final int end = to - terminator.length;
+                final byte[] inserted = terminator.length == 0 ? lastTerminator : terminator;
+                byte[] set = null;
+                final Edits.Op[] ops = program.ops();
+                for (; op < ops.length && ops[op].line() == line; op++) {
+                    Edits.Op o = ops[op];
+                    switch (o.kind()) {
+                        case Edits.INSERT -> {
+                            write(o.content(), 0, o.content().length, inserted);
+                            changed++;
+                        }
+                        case Edits.SET -> set = o.content();
+                        default -> deleteUntil = Math.max(deleteUntil, o.end());
+                    }
+                }
+                if (line >= deleteUntil) {
+                    if (set != null) {
+                        write(set, 0, set.length, terminator);
+                        changed++;
+                    } else content(bytes, from, end, terminator);
+                } else changed++;
+                if (terminator.length != 0) lastTerminator = terminator;
+                line++;
+            }
+
+            private void content(byte[] bytes, int from, int to, byte[] terminator) {
+                final int length = to - from;
+                final Literals literals = program.literals();
+                if (literals != null) {
+                    if (longest.length < length) {
+                        longest = new int[Math.max(length, longest.length << 1)];
+                        pattern = new int[longest.length];
+                    }
+                    if (literals.match(bytes, from, to, longest, pattern)) {
+                        text.reset();
+                        int run = from;
+                        for (int k = 0; k < length; ) {
+                            int l = longest[k];
+                            if (l == 0) {
+                                k++;
+                                continue;
+                            }
+                            text.put(bytes, run, from + k - run);
+                            text.put(literals.replacements[pattern[k]]);
+                            k += l;
+                            run = from + k;
+                        }
+                        text.put(bytes, run, to - run);
+                        Arrays.fill(longest, 0, length, 0);
+                        changed++;
+                        bytes = text.buf;
+                        from = 0;
+                        to = text.len;
+                    }
+                }
+                if (matchers.length != 0) {
+                    final String original = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+                    String s = original;
+                    for (int i = 0; i < matchers.length; i++) s = matchers[i].reset(s).replaceAll(program.regexReplacements()[i]);
+                    // replaceAll returns the same instance when nothing matched.
+                    if (s != original && bytes != text.buf) changed++;
+                    out.utf8(s, 0, s.length());
+                    out.put(terminator);
+                    open = terminator.length == 0;
+                } else write(bytes, from, to, terminator);
+                text.trim();
+            }
+
+            private void write(byte[] bytes, int from, int to, byte[] terminator) {
+                out.put(bytes, from, to - from);
+                out.put(terminator);
+                open = terminator.length == 0;
+            }
+
+            /**
+             * Appends the lines inserted past the end of the file.
+             * */
+            private void finish() {
+                final Edits.Op[] ops = program.ops();
+                for (; op < ops.length; op++) {
+                    Edits.Op o = ops[op];
+                    if (o.kind() != Edits.INSERT) continue;
+                    if (open) out.put(lastTerminator);
+                    write(o.content(), 0, o.content().length, lastTerminator);
+                    changed++;
+                }
+            }
+        }
+
+        /**
+         * Applies {@link Edits} to a file in a single streaming pass.
+         * @param path      the directory path where the file is located
+         * @param fileName  the name of the file without the extension
+         * @param edits     the operations to apply
+         * @param mode      whether to write a "_copy" of the file, or replace it atomically
+         * @return false if the file could not be edited, in which case the failure is reported and the file is left untouched.
+         * */
+        public boolean apply(String path, String fileName, Edits edits, Mode mode) {
+            return apply(path, fileName, edits.compile(), mode);
+        }
+
+        /**
+         * Applies the same {@link Edits} to a batch of files in parallel, one file per task.
+         * <p> Tasks run in a pool shared by every batch, of one thread per available processor.
+         * <p> A failure on a file is reported, and does not stop the rest of the batch.
+         * @param path      the directory path where the files are located
+         * @param mode      whether to write a "_copy" of each file, or replace them atomically
+         * @param edits     the operations to apply
+         * @param fileNames the names of the files without the extension
+         * @return the names of the files that could not be edited, in the order given, empty if the whole batch succeeded.
+         * */
+        public List<String> apply(String path, Mode mode, Edits edits, String... fileNames) {
+            final Program program = edits.compile();
+            final List<String> failed = new ArrayList<>();
+            final int parallelism = Math.min(fileNames.length, Runtime.getRuntime().availableProcessors());
+            if (parallelism <= 1) {
+                for (String fileName : fileNames) if (!apply(path, fileName, program, mode)) failed.add(fileName);
+                return failed;
+            }
+            final ForkJoinPool pool = pool();
+            List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(fileNames.length);
+            for (String fileName : fileNames) tasks.add(pool.submit(() -> apply(path, fileName, program, mode)));
+            for (int i = 0; i < fileNames.length; i++) if (!tasks.get(i).join()) failed.add(fileNames[i]);
+            return failed;
+        }
+
+        private static ForkJoinPool pool;
+
+        /**
+         * @return the pool shared by every batch, created on first use.
+         * Its threads are daemons that retire when idle, so it is never shut down.
+         * */
+        private static synchronized ForkJoinPool pool() {
+            ForkJoinPool p = pool;
+            if (p == null) pool = p = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            return p;
+        }
+
+        /**
+         * Gives {@code target} the POSIX permissions of {@code source}, if the file system supports them,
+         * since temporary files are created readable and writable by their owner only.
+         * */
+        private static void copyPermissions(Path source, Path target) throws IOException {
+            PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+            if (view != null) Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+        }
+
+        private boolean apply(String path, String fileName, Program program, Mode mode) {
+            Path filePath = Paths.get(path, fileName + this.extension);
+            Path target = null;
+            final long start = System.nanoTime();
+            try {
+                target = mode == Mode.copy
+                        ? Paths.get(path, fileName + "_copy" + this.extension)
+                        : Files.createTempFile(filePath.toAbsolutePath().getParent(), fileName, ".tmp");
+                final Run run;
+                final long read, written;
+                try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ);
+                     ChannelWriter writer = new ChannelWriter(target, EDIT_BUFFER)) {
+                    run = new Run(program, writer);
+                    run.run(source);
+                    read = source.size();
+                    written = writer.size();
+                }
+                if (mode == Mode.in_place) {
+                    copyPermissions(filePath, target);
+                    try {
+                        Files.move(target, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(target, filePath, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                if (Metrics.enabled) Metrics.edited(run.changed, read, written, System.nanoTime() - start);
+                return true;
+            } catch (IOException | UncheckedIOException e) {
                 e.printStackTrace();
+                if (mode == Mode.in_place && target != null) {
+                    try {
+                        Files.deleteIfExists(target);
+                    } catch (IOException ignored) {}
+                }
+                return false;
             }
         }
     }
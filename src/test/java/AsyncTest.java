@@ -0,0 +1,199 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTest {
+    private static final String NL = System.lineSeparator();
+    private boolean ansi;
+
+    @BeforeEach
+    void setUp() {
+        ansi = Printer.isAnsi();
+        Printer.printStack(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.Async.disable();
+        Printer.setSink(Printer.Sink.stdout());
+        Printer.setAnsi(ansi);
+    }
+
+    /**
+     * Collects the written lines, each write can be held until {@link #open()}, or slowed down.
+     * */
+    private static final class Gate implements Printer.Sink {
+        final CountDownLatch entered = new CountDownLatch(1), released;
+        final long delayNanos;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Gate(boolean closed, long delayNanos) {
+            this.released = new CountDownLatch(closed ? 1 : 0);
+            this.delayNanos = delayNanos;
+        }
+
+        void open() {released.countDown();}
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            entered.countDown();
+            try {
+                assertTrue(released.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            long end = System.nanoTime() + delayNanos;
+            while (System.nanoTime() < end) Thread.onSpinWait();
+            lock.lock();
+            try {
+                this.bytes.write(bytes, offset, length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<String> lines() {
+            lock.lock();
+            try {
+                String out = bytes.toString(StandardCharsets.UTF_8);
+                return out.isEmpty() ? List.of() : Arrays.asList(out.split(NL));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean colors() {return false;}
+    }
+
+    /**
+     * Prints "0" and waits until the writer is held by the sink with it, then prints 1 to {@code last} into the ring.
+     * */
+    private static void fill(Gate gate, int last) throws InterruptedException {
+        Printer.red.print("0");
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= last; i++) Printer.red.print(Integer.toString(i));
+    }
+
+    @Test
+    void dropNewest() throws InterruptedException {
+        Gate gate = new Gate(true, 0);
+        Printer.setSink(gate);
+        Printer.Async.enable(4, Printer.Async.Backpressure.drop_newest);
+        long dropped = Printer.Async.dropped();
+        fill(gate, 10);
+        assertEquals(6, Printer.Async.dropped() - dropped);
+        gate.open();
+        Printer.Async.flush();
+        assertEquals(List.of("0", "1", "2", "3", "4"), gate.lines());
+    }
+
+    @Test
+    void dropOldest() throws InterruptedException {
+        Gate gate = new Gate(true, 0);
+        Printer.setSink(gate);
+        Printer.Async.enable(4, Printer.Async.Backpressure.drop_oldest);
+        long dropped = Printer.Async.dropped();
+        fill(gate, 10);
+        assertEquals(6, Printer.Async.dropped() - dropped);
+        gate.open();
+        Printer.Async.flush();
+        assertEquals(List.of("0", "7", "8", "9", "10"), gate.lines());
+    }
+
+    @Test
+    void blockLosesNothing() throws InterruptedException {
+        Gate gate = new Gate(true, 0);
+        Printer.setSink(gate);
+        Printer.Async.enable(4, Printer.Async.Backpressure.block);
+        long dropped = Printer.Async.dropped();
+        Thread producer = new Thread(() -> {
+            try {
+                fill(gate, 99);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        producer.start();
+        // the producer is parked on the full ring.
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        gate.open();
+        producer.join();
+        Printer.Async.flush();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) expected.add(Integer.toString(i));
+        assertEquals(expected, gate.lines());
+        assertEquals(dropped, Printer.Async.dropped());
+    }
+
+    @Test
+    void flushWaitsForEveryEarlierLine() {
+        Gate gate = new Gate(false, 200_000);
+        Printer.setSink(gate);
+        Printer.Async.enable(1 << 10, Printer.Async.Backpressure.block);
+        for (int round = 1; round <= 3; round++) {
+            for (int i = 0; i < 100; i++) Printer.blue.print("line", i);
+            Printer.Async.flush();
+            List<String> lines = gate.lines();
+            assertEquals(100 * round, lines.size());
+            assertEquals("line: int = 99", lines.get(lines.size() - 1));
+        }
+    }
+
+    @Test
+    void disableLosesNothingFromConcurrentProducers() throws InterruptedException {
+        Gate gate = new Gate(false, 0);
+        Printer.setSink(gate);
+        Printer.Async.enable(1 << 6, Printer.Async.Backpressure.block);
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) Printer.green.print("p" + id, i);
+            });
+            producers[t].start();
+        }
+        Thread.sleep(5);
+        assertTrue(Printer.Async.disable());
+        for (Thread producer : producers) producer.join();
+        assertEquals(4 * 5_000, gate.lines().size());
+    }
+
+    /**
+     * {@link Printer#setAutoFlush(boolean)} swaps the {@link System#out}, which the writer follows.
+     * */
+    @Test
+    void writerFollowsSystemOut() {
+        Printer.setAnsi(false);
+        PrintStream original = System.out;
+        ByteArrayOutputStream first = new ByteArrayOutputStream(), second = new ByteArrayOutputStream();
+        try {
+            Printer.Async.enable();
+            System.setOut(new PrintStream(first, false, StandardCharsets.UTF_8));
+            Printer.cyan.print("first");
+            Printer.Async.flush();
+            System.setOut(new PrintStream(second, false, StandardCharsets.UTF_8));
+            Printer.cyan.print("second");
+            Printer.Async.flush();
+        } finally {
+            System.setOut(original);
+        }
+        assertEquals("first" + NL, first.toString(StandardCharsets.UTF_8));
+        assertEquals("second" + NL, second.toString(StandardCharsets.UTF_8));
+    }
+}
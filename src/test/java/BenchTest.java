@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BenchTest {
+    @TempDir
+    Path dir;
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) Thread.onSpinWait();
+    }
+
+    @Test
+    void measuresPerOperation() {
+        Printer.Chrono.Bench bench = new Printer.Chrono.Bench(null).warmup(1).measure(3).time(Duration.ofMillis(20));
+        long[] counter = {0};
+        Printer.Chrono.Bench.Result cheap = bench.run("cheap", bh -> bh.consume(counter[0]++));
+        Printer.Chrono.Bench.Result slow = bench.run("slow", bh -> spin(50_000));
+
+        for (Printer.Chrono.Bench.Result result : new Printer.Chrono.Bench.Result[]{cheap, slow}) {
+            assertTrue(result.operations() > 0, result::toString);
+            assertTrue(result.min() <= result.p50() && result.p50() <= result.p90()
+                    && result.p90() <= result.p99() && result.p99() <= result.max(), result::toString);
+            assertTrue(result.timerOverhead() > 0, result::toString);
+        }
+        assertTrue(slow.p50() >= 50_000, slow::toString);
+        assertTrue(cheap.p50() < 1_000, cheap::toString);
+        assertTrue(counter[0] >= cheap.operations());
+    }
+
+    private static Printer.Chrono.Bench.Result result(String name, double p50) {
+        return new Printer.Chrono.Bench.Result(name, 1000, p50, 1, p50, p50, p50, p50, p50, 20);
+    }
+
+    @Test
+    void comparesAgainstABaseline() throws IOException {
+        Printer.Chrono.Bench.save(dir.toString(), "baseline", result("x", 100), result("y", 100));
+        Path baseline = Printer.Export.to_binary.pathOf(dir.toString(), "baseline");
+
+        List<Printer.Chrono.Bench.Comparison> comparisons = Printer.Chrono.Bench.compare(
+                baseline, 0.10, result("x", 105), result("y", 150), result("z", 1));
+        assertEquals(3, comparisons.size());
+        assertFalse(comparisons.get(0).regressed());
+        assertEquals(0.05, comparisons.get(0).change(), 1e-9);
+        assertTrue(comparisons.get(1).regressed());
+        assertEquals(100, comparisons.get(1).baseline());
+        assertTrue(Double.isNaN(comparisons.get(2).baseline()));
+        assertFalse(comparisons.get(2).regressed());
+
+        assertTrue(Printer.Chrono.Bench.compare(Printer.green, baseline, 0.10, result("x", 90)));
+        assertFalse(Printer.Chrono.Bench.compare(Printer.green, baseline, 0.10, result("x", 90), result("y", 111)));
+    }
+}
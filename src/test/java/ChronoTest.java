@@ -0,0 +1,251 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChronoTest {
+    private PrintStream original;
+    private boolean ansi;
+    private ByteArrayOutputStream bytes;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        ansi = Printer.isAnsi();
+        Printer.setAnsi(false);
+        Printer.printStack(false);
+        bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(original);
+        Printer.setAnsi(ansi);
+    }
+
+    private String out() {return bytes.toString(StandardCharsets.UTF_8);}
+
+    @Test
+    void histogramBuckets() {
+        for (long v = 0; v < 2 * Printer.Chrono.Histogram.SUB_BUCKETS; v++) {
+            assertEquals(v, Printer.Chrono.Histogram.indexOf(v));
+            assertEquals(v, Printer.Chrono.Histogram.highestOf((int) v));
+        }
+        // Buckets are contiguous up to Long.MAX_VALUE, and their width is bounded by 1/SUB_BUCKETS of their values.
+        int last = Printer.Chrono.Histogram.indexOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Printer.Chrono.Histogram.highestOf(last));
+        for (int i = 0; i < last; i++) {
+            long highest = Printer.Chrono.Histogram.highestOf(i);
+            assertEquals(i, Printer.Chrono.Histogram.indexOf(highest));
+            assertEquals(i + 1, Printer.Chrono.Histogram.indexOf(highest + 1));
+            long lowest = i == 0 ? 0 : Printer.Chrono.Histogram.highestOf(i - 1) + 1;
+            assertTrue(highest - lowest <= lowest / Printer.Chrono.Histogram.SUB_BUCKETS, "bucket " + i);
+        }
+    }
+
+    @Test
+    void histogramPercentiles() {
+        Printer.Chrono.Histogram histogram = new Printer.Chrono.Histogram();
+        assertEquals(0, histogram.stats().count());
+        for (long v = 1; v <= 10_000; v++) histogram.record(v);
+        histogram.record(-5);
+        Printer.Chrono.Histogram.Stats stats = histogram.stats();
+        assertEquals(10_001, stats.count());
+        assertEquals(0, stats.min());
+        assertEquals(10_000, stats.max());
+        assertEquals(50_005_000 / 10_001.0, stats.mean(), 1e-9);
+        assertPercentile(5_000, stats.p50());
+        assertPercentile(9_000, stats.p90());
+        assertPercentile(9_900, stats.p99());
+        assertPercentile(9_990, stats.p999());
+
+        histogram.reset();
+        histogram.record(Long.MAX_VALUE);
+        stats = histogram.stats();
+        assertEquals(Long.MAX_VALUE, stats.p50());
+        assertEquals(Long.MAX_VALUE, stats.min());
+    }
+
+    /**
+     * A percentile is reported as the highest value of its bucket.
+     * */
+    private static void assertPercentile(long exact, long reported) {
+        assertTrue(reported >= exact && reported - exact <= exact / Printer.Chrono.Histogram.SUB_BUCKETS,
+                () -> "expected ~" + exact + " but was " + reported);
+    }
+
+    @Test
+    void concurrentRecording() throws InterruptedException {
+        Printer.Chrono.Histogram histogram = new Printer.Chrono.Histogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final long offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) histogram.record(i % 100 + offset);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        Printer.Chrono.Histogram.Stats stats = histogram.stats();
+        assertEquals(800_000, stats.count());
+        assertEquals(0, stats.min());
+        assertEquals(99 + 7, stats.max());
+        assertEquals(49.5 + 3.5, stats.mean(), 1e-9);
+    }
+
+    @Test
+    void recordingMode() {
+        Printer.Chrono chrono = new Printer.Chrono(Printer.Chrono.Format.nanos, Printer.green);
+        assertNull(chrono.stats());
+        assertNull(chrono.report());
+        chrono.silentStart();
+        assertTrue(chrono.recording(true));
+        assertFalse(chrono.recording(true));
+        for (int i = 0; i < 10; i++) chrono.lap();
+        chrono.syncLap();
+        chrono.record(42);
+        assertEquals("", out());
+
+        Printer.Chrono.Histogram.Stats stats = chrono.report();
+        assertEquals(12, stats.count());
+        String report = out();
+        assertTrue(report.startsWith("Report at (chrono = "), report);
+        assertTrue(report.contains("count = 12, min = "), report);
+        assertTrue(report.contains(" Nanos, p99.9 = "), report);
+
+        assertTrue(chrono.recording(false));
+        assertNull(chrono.stats());
+        chrono.record(1);
+        assertEquals(1, chrono.stats().count());
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) Thread.onSpinWait();
+    }
+
+    private static final Pattern SPAN = Pattern.compile("( +)(\\w+) >> count = (\\d+), total = (\\d+), self = (\\d+), mean = (\\d+)");
+
+    @Test
+    void spanTree() {
+        Printer.Chrono.Span.reset();
+        for (int i = 0; i < 3; i++) {
+            Printer.Chrono.Span outer = Printer.Chrono.span("outer");
+            spin(200_000);
+            Printer.Chrono.Span inner = Printer.Chrono.span("inner");
+            spin(1_000_000);
+            inner.close();
+            outer.close();
+        }
+        Printer.Chrono.Span other = Printer.Chrono.span("other");
+        other.close();
+        assertThrows(IllegalStateException.class, other::close);
+        Printer.Chrono.Span.report(Printer.cyan, (nanos, into) -> into.append(nanos));
+
+        String[] lines = out().split(System.lineSeparator());
+        assertEquals("Spans report...", lines[0]);
+        assertEquals(4, lines.length, out());
+        Matcher outer = match(lines[1], " ", "outer"), inner = match(lines[2], "  ", "inner");
+        match(lines[3], " ", "other");
+        assertEquals("3", outer.group(3));
+        assertEquals("3", inner.group(3));
+        long outerTotal = Long.parseLong(outer.group(4)), outerSelf = Long.parseLong(outer.group(5)),
+                innerTotal = Long.parseLong(inner.group(4)), innerSelf = Long.parseLong(inner.group(5));
+        assertEquals(outerTotal, outerSelf + innerTotal);
+        assertEquals(innerTotal, innerSelf);
+        assertTrue(innerTotal >= 3_000_000, lines[2]);
+        assertTrue(outerSelf >= 600_000, lines[1]);
+        assertEquals(outerTotal / 3, Long.parseLong(outer.group(6)));
+
+        Printer.Chrono.Span.reset();
+        bytes.reset();
+        Printer.Chrono.Span.report(Printer.cyan, (nanos, into) -> into.append(nanos));
+        assertEquals("Spans report..." + System.lineSeparator(), out());
+    }
+
+    private static Matcher match(String line, String indent, String name) {
+        Matcher matcher = SPAN.matcher(line);
+        assertTrue(matcher.matches(), line);
+        assertEquals(indent, matcher.group(1), line);
+        assertEquals(name, matcher.group(2), line);
+        return matcher;
+    }
+
+    private static String format(Printer.Chrono.NanoFormat format, long nanos) {
+        StringBuilder sb = new StringBuilder();
+        format.format(nanos, sb);
+        return sb.toString();
+    }
+
+    @Test
+    void adaptiveFormat() {
+        Printer.Chrono.Format adaptive = Printer.Chrono.Format.adaptive;
+        assertEquals("0 ns", format(adaptive, 0));
+        assertEquals("999 ns", format(adaptive, 999));
+        assertEquals("1.000 \u00B5s", format(adaptive, 1_000));
+        assertEquals("12.345 \u00B5s", format(adaptive, 12_345));
+        assertEquals("999.999 \u00B5s", format(adaptive, 999_999));
+        assertEquals("1.000 ms", format(adaptive, 1_000_000));
+        assertEquals("3.500 ms", format(adaptive, 3_500_000));
+        assertEquals("1.005 ms", format(adaptive, 1_005_999));
+        assertEquals("999.999 ms", format(adaptive, 999_999_999));
+        assertEquals("1.000 s", format(adaptive, 1_000_000_000));
+        assertEquals("3723.000 s", format(adaptive, 3_723_000_000_000L));
+        assertEquals("-1.500 ms", format(adaptive, -1_500_000));
+        assertEquals("-9223372036.854 s", format(adaptive, Long.MIN_VALUE));
+    }
+
+    @Test
+    void fixedUnitFormats() {
+        assertEquals("1500000000 Nanos", format(Printer.Chrono.Format.nanos, 1_500_000_000));
+        assertEquals("1 Secs. 500 Millis. 500000000 Nanos", format(Printer.Chrono.Format.full, 1_500_000_000));
+        assertEquals("1500.250 Micros", format(Printer.Chrono.Format.micros, 1_500_250));
+        assertEquals("0.001 Millis", format(Printer.Chrono.Format.millis, 1_000));
+        assertEquals("0.000 Millis", format(Printer.Chrono.Format.millis, 999));
+    }
+
+    @Test
+    void isoFormatMatchesDuration() {
+        long[] values = {
+                0, 1, 10, 999_999_999, 1_000_000_000, 59_999_999_999L, 60_000_000_000L, 62_500_000_000L,
+                3_599_000_000_000L, 3_600_000_000_000L, 3_661_000_000_001L, 90_000_000_000_000L, Long.MAX_VALUE
+        };
+        for (long nanos : values) assertEquals(Duration.ofNanos(nanos).toString(), format(Printer.Chrono.Format.iso, nanos));
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 10_000; i++) {
+            long nanos = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+            assertEquals(Duration.ofNanos(nanos).toString(), format(Printer.Chrono.Format.iso, nanos));
+        }
+        assertEquals("-PT1.5S", format(Printer.Chrono.Format.iso, -1_500_000_000));
+    }
+
+    @Test
+    void registeredFormats() {
+        Printer.Chrono.NanoFormat seconds = (nanos, into) -> into.append(nanos / 1_000_000_000).append('s');
+        Printer.Chrono.Format.register("test-seconds", seconds);
+        assertEquals(seconds, Printer.Chrono.Format.of("test-seconds"));
+        assertEquals(Printer.Chrono.Format.iso, Printer.Chrono.Format.of("iso"));
+        assertThrows(IllegalArgumentException.class, () -> Printer.Chrono.Format.register("iso", seconds));
+        assertThrows(IllegalArgumentException.class, () -> Printer.Chrono.Format.of("missing"));
+
+        Printer.Chrono chrono = new Printer.Chrono(Printer.Chrono.Format.of("test-seconds"), Printer.green);
+        chrono.silentStart();
+        chrono.elapsed();
+        assertTrue(out().startsWith("Elapsed at (chrono = "), out());
+        assertTrue(out().endsWith(")...0s" + System.lineSeparator()), out());
+    }
+}
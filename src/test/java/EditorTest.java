@@ -0,0 +1,259 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditorTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        Printer.Editor.setSidecar(false);
+        Printer.Editor.setIndexCacheSize(0);
+        Printer.Editor.clearIndexCache();
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.writeString(dir.resolve(name + Printer.Editor.TXT.getExtension()), content, StandardCharsets.UTF_8);
+    }
+
+    private String copy(String name) throws IOException {
+        return Files.readString(dir.resolve(name + "_copy" + Printer.Editor.TXT.getExtension()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void mappedEditKeepsTerminatorsAndSortsLines() throws IOException {
+        write("small", "zero\r\none\ntwo\r\nthree\nfour");
+        Printer.Editor.TXT.editLineMapped(dir.toString(), "small",
+                new Printer.Editor.Line(4, "FOUR \u00F1"),
+                new Printer.Editor.Line(1, "first"),
+                new Printer.Editor.Line(1, "ONE"),
+                new Printer.Editor.Line(0, ""),
+                new Printer.Editor.Line(9, "ignored"),
+                new Printer.Editor.Line(-1, "ignored")
+        );
+        assertEquals("\r\nONE\ntwo\r\nthree\nFOUR \u00F1", copy("small"));
+
+        Printer.Editor.TXT.editLine(dir.toString(), "small",
+                new Printer.Editor.Line(3, "THREE"),
+                new Printer.Editor.Line(1, "ONE")
+        );
+        String nl = System.lineSeparator();
+        assertEquals("zero" + nl + "ONE" + nl + "two" + nl + "THREE" + nl + "four" + nl, copy("small"));
+    }
+
+    @Test
+    void scannerMatchesAcrossWindows() throws IOException {
+        SplittableRandom random = new SplittableRandom(11);
+        StringBuilder text = new StringBuilder();
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long start = text.length();
+            for (int j = random.nextInt(40); j > 0; j--) text.append((char) ('a' + random.nextInt(26)));
+            expected.add(new long[]{start, text.length()});
+            text.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        Path file = dir.resolve("scan.txt");
+        Files.writeString(file, text, StandardCharsets.US_ASCII);
+
+        for (int window : new int[]{1, 7, 8, 13, 4096}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Printer.Editor.LineScanner scanner = new Printer.Editor.LineScanner(channel, channel.size(), window);
+                for (int line = 0; line < expected.size(); line += 1 + random.nextInt(3)) {
+                    assertTrue(scanner.seek(line));
+                    assertEquals(expected.get(line)[0], scanner.start, "window " + window + ", line " + line);
+                    assertEquals(expected.get(line)[1], scanner.end, "window " + window + ", line " + line);
+                }
+                assertFalse(scanner.seek(expected.size()));
+            }
+        }
+    }
+
+    private static long[] starts(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Printer.Editor.LineIndex index = Printer.Editor.LineIndex.build(channel, channel.size(), 0);
+            long[] starts = new long[index.lines() + 1];
+            for (int i = 0; i < starts.length; i++) starts[i] = index.start(i);
+            return starts;
+        }
+    }
+
+    @Test
+    void indexedEditsAndReads() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) text.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        write("indexed", text.toString());
+        String dir = this.dir.toString();
+        assertEquals(0, Printer.Editor.getIndexCacheSize());
+        Printer.Editor.setIndexCacheSize(16);
+
+        assertEquals("line 0", Printer.Editor.TXT.readLine(dir, "indexed", 0));
+        assertEquals("line 999", Printer.Editor.TXT.readLine(dir, "indexed", 999));
+        assertNull(Printer.Editor.TXT.readLine(dir, "indexed", 1_000));
+
+        Printer.Editor.TXT.editLineMapped(dir, "indexed",
+                new Printer.Editor.Line(500, "a much longer line five hundred"),
+                new Printer.Editor.Line(3, ""),
+                new Printer.Editor.Line(999, "\u00F1")
+        );
+        Path copy = this.dir.resolve("indexed_copy.txt");
+        // The derived index of the copy is used as-is, and must match a full scan.
+        assertDerivedIndex(copy);
+        assertEquals("", Printer.Editor.TXT.readLine(dir, "indexed_copy", 3));
+        assertEquals("line 4", Printer.Editor.TXT.readLine(dir, "indexed_copy", 4));
+        assertEquals("a much longer line five hundred", Printer.Editor.TXT.readLine(dir, "indexed_copy", 500));
+        assertEquals("\u00F1", Printer.Editor.TXT.readLine(dir, "indexed_copy", 999));
+    }
+
+    private void assertDerivedIndex(Path copy) throws IOException {
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ)) {
+            Printer.Editor.LineIndex derived = Printer.Editor.LineIndex.of(copy, channel);
+            long[] starts = new long[derived.lines() + 1];
+            for (int i = 0; i < starts.length; i++) starts[i] = derived.start(i);
+            assertArrayEquals(starts(copy), starts);
+        }
+    }
+
+    @Test
+    void multiLineReplacementsShiftTheDerivedIndex() throws IOException {
+        Printer.Editor.setIndexCacheSize(16);
+        write("multi", "l0\nl1\nl2\nl3\nl4");
+        String dir = this.dir.toString();
+        Printer.Editor.TXT.editLineMapped(dir, "multi",
+                new Printer.Editor.Line(1, "A\nB"),
+                new Printer.Editor.Line(3, "X\r\nY\n"),
+                new Printer.Editor.Line(4, "Z\n")
+        );
+        assertEquals("l0\nA\nB\nl2\nX\r\nY\n\nZ\n", copy("multi"));
+        assertDerivedIndex(this.dir.resolve("multi_copy.txt"));
+        String[] expected = {"l0", "A", "B", "l2", "X", "Y", "", "Z"};
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], Printer.Editor.TXT.readLine(dir, "multi_copy", i));
+        assertNull(Printer.Editor.TXT.readLine(dir, "multi_copy", expected.length));
+    }
+
+    @Test
+    void sidecarIsReusedUntilTheFileChanges() throws IOException {
+        Printer.Editor.setSidecar(true);
+        write("side", "a\nb\nc\n");
+        String dir = this.dir.toString();
+        assertEquals("b", Printer.Editor.TXT.readLine(dir, "side", 1));
+        Path sidecar = this.dir.resolve("side.txt.lines");
+        assertTrue(Files.isRegularFile(sidecar));
+
+        Printer.Editor.clearIndexCache();
+        assertEquals("c", Printer.Editor.TXT.readLine(dir, "side", 2));
+        assertNull(Printer.Editor.TXT.readLine(dir, "side", 3));
+
+        write("side", "a much longer first line\nsecond\n");
+        assertEquals("second", Printer.Editor.TXT.readLine(dir, "side", 1));
+        assertNull(Printer.Editor.TXT.readLine(dir, "side", 2));
+
+        Printer.Editor.setIndexCacheSize(0);
+        assertEquals("a much longer first line", Printer.Editor.TXT.readLine(dir, "side", 0));
+    }
+
+    @Test
+    void streamingEdits() throws IOException {
+        write("ops", "abcd ab bc\r\nkeep\nid=12 drop\ndrop\nset me\nlast");
+        Printer.Editor.TXT.apply(dir.toString(), "ops", new Printer.Editor.Edits()
+                .replace("bc", "[bc]")
+                .replace("abcd", "[abcd]")
+                .replace("ab", "[ab]")
+                .replaceAll("id=(\\d+)", "id=<$1>")
+                .insert(0, "first")
+                .insert(1, "before keep")
+                .delete(2, 4)
+                .set(4, "set")
+                .insert(9, "appended"), Printer.Editor.Mode.copy);
+        assertEquals(
+                "first\r\n[abcd] [ab] [bc]\r\nbefore keep\nkeep\nset\nlast\nappended\n",
+                copy("ops")
+        );
+    }
+
+    private static String naive(String line, String[] literals, String[] replacements) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < line.length(); ) {
+            int best = -1;
+            for (int p = 0; p < literals.length; p++) {
+                if (line.startsWith(literals[p], i) && (best < 0 || literals[p].length() >= literals[best].length())) best = p;
+            }
+            if (best < 0) out.append(line.charAt(i++));
+            else {
+                out.append(replacements[best]);
+                i += literals[best].length();
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    void literalsMatchNaiveReplacement() throws IOException {
+        String[] literals = {"ab", "abab", "b", "ba", "\u00F1a", "caab", "aaaa"};
+        String[] replacements = {"1", "22", "", "\u20AC", "5", "666666", "7"};
+        SplittableRandom random = new SplittableRandom(3);
+        StringBuilder original = new StringBuilder(), expected = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            StringBuilder line = new StringBuilder();
+            // Some lines are longer than the read buffer.
+            for (int j = i % 5_000 == 0 ? 100_000 : random.nextInt(30); j > 0; j--) line.append("abc\u00F1".charAt(random.nextInt(4)));
+            original.append(line).append('\n');
+            expected.append(naive(line.toString(), literals, replacements)).append('\n');
+        }
+        write("literals", original.toString());
+        Printer.Editor.Edits edits = new Printer.Editor.Edits();
+        for (int p = 0; p < literals.length; p++) edits.replace(literals[p], replacements[p]);
+        Printer.Editor.TXT.apply(dir.toString(), "literals", edits, Printer.Editor.Mode.copy);
+        assertEquals(expected.toString(), copy("literals"));
+    }
+
+    @Test
+    void parallelInPlaceBatch() throws IOException {
+        String[] names = new String[12];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "batch_" + i;
+            write(names[i], ("<b>" + i + "</b>\n").repeat(1_000));
+        }
+        Path first = dir.resolve(names[0] + ".txt");
+        boolean posix = Files.getFileAttributeView(first, PosixFileAttributeView.class) != null;
+        if (posix) Files.setPosixFilePermissions(first, PosixFilePermissions.fromString("rw-r--r--"));
+        String[] batch = Arrays.copyOf(names, names.length + 1);
+        batch[names.length] = "missing";
+        List<String> failed = Printer.Editor.TXT.apply(dir.toString(), Printer.Editor.Mode.in_place, new Printer.Editor.Edits()
+                .replace("<b>", "<strong>")
+                .replace("</b>", "</strong>")
+                .delete(1, 1_000), batch);
+        assertEquals(List.of("missing"), failed);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals("<strong>" + i + "</strong>\n", Files.readString(dir.resolve(names[i] + ".txt")));
+        }
+        if (posix) assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(first)));
+        // the pool is shared by the next batch.
+        assertEquals(List.of(), Printer.Editor.TXT.apply(dir.toString(), Printer.Editor.Mode.in_place,
+                new Printer.Editor.Edits().replace("strong", "em"), names));
+        assertEquals("<em>0</em>\n", Files.readString(first));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(names.length, files.count());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportTest {
+    private static final String[] headers = {"id", "nanos", "label", "note"};
+    private static final String[] alphabet = {"a", "b", ",", "\"", "\n", "\r", " ", "\u00F1", "\u20AC", "\uD83D\uDE00", "xyz"};
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        Printer.Export.setParallelism(1);
+        Printer.Export.setChunkSize(1 << 12);
+        Printer.Export.setBufferSize(1 << 16);
+    }
+
+    private static String[] row(int i) {
+        SplittableRandom random = new SplittableRandom(i);
+        StringBuilder label = new StringBuilder();
+        for (int j = random.nextInt(12); j > 0; j--) label.append(alphabet[random.nextInt(alphabet.length)]);
+        return new String[]{
+                Integer.toString(i),
+                Long.toString(random.nextLong()),
+                label.toString(),
+                random.nextInt(10) == 0 ? null : "note " + i
+        };
+    }
+
+    private Path save(String name, int rows) {
+        Printer.Export.to_csv.save(dir.toString(), name, headers, IntStream.range(0, rows).mapToObj(ExportTest::row));
+        return Printer.Export.to_csv.pathOf(dir.toString(), name);
+    }
+
+    @Test
+    void quotesAsRfc4180() throws IOException {
+        Printer.Export.to_csv.save(dir.toString(), "quotes", new String[]{"a", "b"}, new String[][]{
+                {"plain", "with,comma"},
+                {"say \"hi\"", null},
+                {"two\nlines", "\u00F1"}
+        });
+        assertEquals(
+                "a,b\r\nplain,\"with,comma\"\r\n\"say \"\"hi\"\"\",\r\n\"two\nlines\",\u00F1\r\n",
+                Files.readString(dir.resolve("quotes.csv"))
+        );
+    }
+
+    @Test
+    void parallelOutputIsByteIdentical() throws IOException {
+        final int rows = 300_000;
+        Printer.Export.setBufferSize(1 << 10);
+        Path sequential = save("sequential", rows);
+
+        int[][] settings = {{2, 1}, {4, 1000}, {3, 4096}, {8, 77_777}, {Runtime.getRuntime().availableProcessors() + 1, rows * 2}};
+        for (int[] setting : settings) {
+            Printer.Export.setParallelism(setting[0]);
+            Printer.Export.setChunkSize(setting[1]);
+            Path parallel = save("parallel_" + setting[0] + "_" + setting[1], rows);
+            assertEquals(-1L, Files.mismatch(sequential, parallel), "parallelism = " + setting[0] + ", chunk = " + setting[1]);
+        }
+        assertTrue(Files.size(sequential) > rows * 20L);
+    }
+
+    @Test
+    void parallelEmptyExport() throws IOException {
+        Printer.Export.setParallelism(4);
+        Path path = save("empty", 0);
+        assertEquals("id,nanos,label,note\r\n", Files.readString(path));
+    }
+
+    private static Printer.Export.Columns columns() {
+        return new Printer.Export.Columns()
+                .add("id", new int[]{1, -2, Integer.MAX_VALUE})
+                .add("nanos", new long[]{Long.MIN_VALUE, 0, 1_500_000})
+                .add("ratio", new double[]{0.1, Double.NaN, -2.5})
+                .add("label", new String[]{"tab\there", null, "\"q\" \u00F1"});
+    }
+
+    @Test
+    void typedTextFormats() throws IOException {
+        Printer.Export.to_tsv.save(dir.toString(), "typed", columns());
+        assertEquals(
+                "id\tnanos\tratio\tlabel\n"
+                        + "1\t" + Long.MIN_VALUE + "\t0.1\ttab\\there\n"
+                        + "-2\t0\tNaN\t\n"
+                        + Integer.MAX_VALUE + "\t1500000\t-2.5\t\"q\" \u00F1\n",
+                Files.readString(dir.resolve("typed.tsv"))
+        );
+        Printer.Export.to_jsonl.save(dir.toString(), "typed", columns());
+        assertEquals(
+                "{\"id\":1,\"nanos\":" + Long.MIN_VALUE + ",\"ratio\":0.1,\"label\":\"tab\\there\"}\n"
+                        + "{\"id\":-2,\"nanos\":0,\"ratio\":null,\"label\":null}\n"
+                        + "{\"id\":" + Integer.MAX_VALUE + ",\"nanos\":1500000,\"ratio\":-2.5,\"label\":\"\\\"q\\\" \u00F1\"}\n",
+                Files.readString(dir.resolve("typed.jsonl"))
+        );
+    }
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        Printer.Export.setBufferSize(64);
+        Printer.Export.to_binary.save(dir.toString(), "typed", columns());
+        try (Printer.Export.Columns.Mapped mapped = Printer.Export.read(Printer.Export.to_binary.pathOf(dir.toString(), "typed"))) {
+            assertEquals(3, mapped.rows());
+            assertEquals(4, mapped.columns());
+            assertEquals(2, mapped.indexOf("ratio"));
+            assertEquals(Printer.Export.Columns.Type.utf8, mapped.type(3));
+            int[] ids = new int[3];
+            mapped.ints(0).get(ids);
+            assertArrayEquals(new int[]{1, -2, Integer.MAX_VALUE}, ids);
+            assertEquals(Long.MIN_VALUE, mapped.getLong(1, 0));
+            assertEquals(1_500_000, mapped.longs(1).get(2));
+            assertTrue(Double.isNaN(mapped.getDouble(2, 1)));
+            assertEquals(-2.5, mapped.doubles(2).get(2));
+            assertEquals("tab\there", mapped.getString(3, 0));
+            assertEquals("", mapped.getString(3, 1));
+            assertEquals("\"q\" \u00F1", mapped.getString(3, 2));
+        }
+    }
+
+    @Test
+    void binaryRows() throws IOException {
+        Printer.Export.to_binary.save(dir.toString(), "rows", new String[]{"name", "value"},
+                new String[][]{{"a", "1"}, {null, "\u00F1"}});
+        try (Printer.Export.Columns.Mapped mapped = Printer.Export.read(Printer.Export.to_binary.pathOf(dir.toString(), "rows"))) {
+            assertEquals(2, mapped.rows());
+            assertEquals(2, mapped.columns());
+            assertEquals(1, mapped.indexOf("value"));
+            assertEquals(Printer.Export.Columns.Type.utf8, mapped.type(0));
+            assertEquals("a", mapped.getString(0, 0));
+            assertEquals("", mapped.getString(0, 1));
+            assertEquals("\u00F1", mapped.getString(1, 1));
+        }
+        Printer.Export.to_binary.save(dir.toString(), "unnamed", null, Stream.<String[]>of(new String[]{"x", "y", "z"}));
+        try (Printer.Export.Columns.Mapped mapped = Printer.Export.read(Printer.Export.to_binary.pathOf(dir.toString(), "unnamed"))) {
+            assertEquals(1, mapped.rows());
+            assertEquals("2", mapped.name(2));
+            assertEquals("z", mapped.getString(2, 0));
+        }
+    }
+
+    @Test
+    void binaryWideHeaderAndMalformedFiles() throws IOException {
+        // The names alone exceed the first header window.
+        Printer.Export.Columns columns = new Printer.Export.Columns();
+        for (int c = 0; c < 3; c++) columns.add(("c" + c).repeat(300_000), new int[]{c, -c});
+        Printer.Export.to_binary.save(dir.toString(), "wide", columns);
+        Path wide = Printer.Export.to_binary.pathOf(dir.toString(), "wide");
+        try (Printer.Export.Columns.Mapped mapped = Printer.Export.read(wide)) {
+            assertEquals(3, mapped.columns());
+            assertEquals(2, mapped.indexOf("c2".repeat(300_000)));
+            assertEquals(-2, mapped.getInt(2, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> mapped.getInt(2, 2));
+            assertThrows(IndexOutOfBoundsException.class, () -> mapped.getInt(0, -1));
+        }
+
+        Path file = dir.resolve("malformed.bin");
+        byte[] bytes = Files.readAllBytes(wide);
+        Files.write(file, Arrays.copyOf(bytes, 1 << 20));
+        assertThrows(IOException.class, () -> Printer.Export.read(file));
+        Files.write(file, Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> Printer.Export.read(file));
+        bytes[20] = 99;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Printer.Export.read(file));
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterTest {
+    private static final String NL = System.lineSeparator();
+    private PrintStream original;
+    private boolean ansi;
+    private ByteArrayOutputStream bytes;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        ansi = Printer.isAnsi();
+        Printer.setAnsi(false);
+        Printer.printStack(false);
+        bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.Filter.reset();
+        System.setOut(original);
+        Printer.setAnsi(ansi);
+    }
+
+    private String out() {return bytes.toString(StandardCharsets.UTF_8);}
+
+    @Test
+    void fastPathFollowsTheConfiguration() {
+        assertFalse(Printer.Filter.isActive());
+        Printer.Filter.exclude("X");
+        assertTrue(Printer.Filter.isActive());
+        Printer.Filter.exclude();
+        assertFalse(Printer.Filter.isActive());
+
+        Printer.Filter.enable(Printer.red, false);
+        assertTrue(Printer.Filter.isActive());
+        Printer.Filter.enable(Printer.red, true);
+        assertFalse(Printer.Filter.isActive());
+
+        Printer.Filter.level(Printer.red, Printer.Level.debug);
+        assertTrue(Printer.Filter.isActive());
+        Printer.Filter.reset();
+        assertFalse(Printer.Filter.isActive());
+        assertEquals(Printer.Level.info, Printer.Filter.level(Printer.red));
+        assertThrows(NullPointerException.class, () -> Printer.Filter.threshold(null));
+    }
+
+    @Test
+    void levelsAndThreshold() {
+        Printer.Filter.level(Printer.red, Printer.Level.debug);
+        Printer.Filter.level(Printer.yellow, Printer.Level.warn);
+        Printer.Filter.threshold(Printer.Level.info);
+        Printer.red.print("debug");
+        Printer.green.print("info");
+        Printer.yellow.print("warn");
+        assertEquals("info" + NL + "warn" + NL, out());
+
+        Printer.Filter.threshold(Printer.Level.trace);
+        Printer.red.print("debug");
+        assertEquals("info" + NL + "warn" + NL + "debug" + NL, out());
+    }
+
+    @Test
+    void enabling() {
+        Printer.Filter.enable(Printer.blue, false);
+        assertFalse(Printer.Filter.isEnabled(Printer.blue));
+        Printer.blue.print("blue");
+        Printer.cyan.print("cyan");
+        Printer.Filter.enable(false);
+        assertFalse(Printer.Filter.isEnabled(Printer.cyan));
+        Printer.cyan.print("disabled");
+        Printer.Filter.enable(true);
+        Printer.cyan.print("enabled");
+        assertEquals("cyan" + NL + "enabled" + NL, out());
+    }
+
+    @Test
+    void includesAndExcludesByTagPrefix() {
+        Printer.Filter.include("net.", "db.");
+        Printer.Filter.exclude("net.noisy");
+        Printer.green.print("net.http", "a");
+        Printer.green.print("net.noisy.poll", "b");
+        Printer.green.print("db.pool", "c");
+        Printer.green.print("ui.click", "d");
+        Printer.green.print("untagged");
+        Printer.green.print("ui.click", 1);
+        assertEquals("net.http: a" + NL + "db.pool: c" + NL + "untagged" + NL, out());
+    }
+
+    @Test
+    void suppressedSuppliersAreNeverCalled() {
+        AtomicInteger calls = new AtomicInteger();
+        Printer.Filter.exclude("LAZY");
+        Printer.purple.print("LAZY", () -> "lazy " + calls.incrementAndGet());
+        Printer.Filter.enable(Printer.purple, false);
+        Printer.purple.print(() -> "lazy " + calls.incrementAndGet());
+        Printer.purple.print(calls, c -> "lazy " + c.incrementAndGet());
+        assertEquals(0, calls.get());
+        assertEquals("", out());
+
+        Printer.Filter.reset();
+        Printer.purple.print("LAZY", () -> "lazy " + calls.incrementAndGet());
+        assertEquals(1, calls.get());
+        assertEquals("LAZY: lazy 1" + NL, out());
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+    @TempDir
+    Path dir;
+    private PrintStream original;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Printer.printStack(false);
+        Printer.Metrics.enable(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(original);
+        Printer.Metrics.timing(false);
+        Printer.Metrics.unregisterMBean();
+    }
+
+    @Test
+    void countsPrintsExportsAndEdits() throws IOException {
+        Printer.Metrics.Snapshot before = Printer.metrics();
+        Printer.red.print("TAG", "message");
+        Printer.red.print(1);
+        Printer.green.print(true);
+        Printer.printStack(true);
+        Printer.blue.print("with stack");
+        Printer.printStack(false);
+
+        Printer.Export.to_csv.save(dir.toString(), "rows", new String[]{"a"}, new String[][]{{"1"}, {"2"}, {"3"}});
+        Files.writeString(dir.resolve("edit.txt"), "a\nb\nc\n");
+        Printer.Editor.TXT.apply(dir.toString(), "edit", new Printer.Editor.Edits().set(1, "B").delete(2), Printer.Editor.Mode.copy);
+
+        Printer.Metrics.Snapshot after = Printer.metrics();
+        assertEquals(2, after.prints().get(Printer.red) - before.prints().get(Printer.red));
+        assertEquals(1, after.prints().get(Printer.green) - before.prints().get(Printer.green));
+        assertEquals(4, after.printsTotal() - before.printsTotal());
+        assertEquals(4, after.writes() - before.writes());
+        assertTrue(after.bytesWritten() - before.bytesWritten() > 0);
+        assertEquals(before.writeNanos(), after.writeNanos());
+        assertTrue(after.stackCaptures() > before.stackCaptures());
+
+        assertEquals(1, after.exportCalls() - before.exportCalls());
+        assertEquals(3, after.exportRows() - before.exportRows());
+        assertEquals(Files.size(dir.resolve("rows.csv")), after.exportBytes() - before.exportBytes());
+
+        assertEquals(1, after.editorCalls() - before.editorCalls());
+        assertEquals(2, after.editorLines() - before.editorLines());
+        assertEquals(6, after.editorBytesRead() - before.editorBytesRead());
+        assertEquals(4, after.editorBytesWritten() - before.editorBytesWritten());
+    }
+
+    @Test
+    void timingIsOptIn() {
+        assertFalse(Printer.Metrics.isTiming());
+        assertTrue(Printer.Metrics.timing(true));
+        assertFalse(Printer.Metrics.timing(true));
+        Printer.Metrics.Snapshot before = Printer.metrics();
+        for (int i = 0; i < 100; i++) Printer.red.print("timed");
+        Printer.Metrics.Snapshot after = Printer.metrics();
+        assertEquals(100, after.writes() - before.writes());
+        assertTrue(after.writeNanos() > before.writeNanos());
+    }
+
+    @Test
+    void exposedThroughJmx() throws Exception {
+        assertTrue(Printer.Metrics.registerMBean());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Printer.Metrics.OBJECT_NAME);
+        long before = (Long) server.getAttribute(name, "PrintsTotal");
+        Printer.yellow.print("jmx");
+        assertEquals(before + 1, (Long) server.getAttribute(name, "PrintsTotal"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, server.getAttribute(name, "Writes"));
+    }
+}
@@ -0,0 +1,193 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PrinterAllocationTest {
+    private static final String NL = System.lineSeparator();
+    private PrintStream original;
+    private boolean ansi;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        ansi = Printer.isAnsi();
+        Printer.printStack(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(original);
+        Printer.setAnsi(ansi);
+    }
+
+    private static String capture(Runnable prints) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        prints.run();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void formats() {
+        Printer.setAnsi(false);
+        String out = capture(() -> {
+            Printer.red.print("TAG", "message");
+            Printer.red.print("TAG", 42);
+            Printer.red.print(Long.MIN_VALUE);
+            Printer.red.print(-7);
+            Printer.red.print("TAG", 0.1);
+            Printer.red.print(true);
+            Printer.red.print("TAG", 5L);
+            Printer.red.print("TAG", false);
+            Printer.red.print(0.25);
+            Printer.red.print("TAG", (Integer) null);
+            Printer.red.print("\u00F1 \u2192 \uD83D\uDE00");
+        });
+        assertEquals(
+                "TAG: message" + NL
+                        + "TAG: int = 42" + NL
+                        + "long = " + Long.MIN_VALUE + NL
+                        + "long = -7" + NL
+                        + "TAG: 0.1" + NL
+                        + "true" + NL
+                        + "TAG: 5" + NL
+                        + "TAG: false" + NL
+                        + "0.25" + NL
+                        + "TAG: Integer = null" + NL
+                        + "\u00F1 \u2192 \uD83D\uDE00" + NL,
+                out
+        );
+        Printer.setAnsi(true);
+        assertEquals("\u001B[32mhi\u001B[0m" + NL, capture(() -> Printer.green.print("hi")));
+    }
+
+    @Test
+    void templates() {
+        Printer.setAnsi(false);
+        Runnable prints = () -> {
+            Printer.red.printf("{} of {} rows", 3L, 10L);
+            Printer.red.printf("{} + {} = {}", 0.1, 0.2, 0.1 + 0.2);
+            Printer.red.printf("{}, {}, {} and {}", "a", 'b', null, java.util.List.of(1, true));
+            Printer.red.printf("escaped \\{} {} {}", (Object) 1, "\u00F1");
+            Printer.red.printf("missing {} {}", "one");
+            Printer.red.printf("Loaded {}", 5L);
+        };
+        String expected = "3 of 10 rows" + NL
+                + "0.1 + 0.2 = " + (0.1 + 0.2) + NL
+                + "a, b, null and [1, true]" + NL
+                + "escaped {} 1 \u00F1" + NL
+                + "missing one {}" + NL
+                + "Loaded 5" + NL;
+        assertEquals(expected, capture(prints));
+
+        Printer.Async.enable();
+        try {
+            assertEquals(expected, capture(() -> {
+                prints.run();
+                Printer.Async.flush();
+            }));
+        } finally {
+            Printer.Async.disable();
+        }
+    }
+
+    @Test
+    void arrays() {
+        Printer.setAnsi(false);
+        int[] ints = new int[1_000_000];
+        for (int i = 0; i < ints.length; i++) ints[i] = i;
+        assertEquals(
+                "int[1000000] = [0, 1, 2, ... 999995 more ..., 999998, 999999] {min = 0, max = 999999, sum = 499999500000}" + NL,
+                capture(() -> Printer.cyan.print(ints, 3, 2))
+        );
+        assertEquals(
+                "long[3] = [... 1 more ..., " + Long.MAX_VALUE + ", 1] {min = 1, max = " + Long.MAX_VALUE + ", sum = " + (Long.MAX_VALUE + 2.0) + "}" + NL
+                        + "TAG: long[2] = [-4, 4] {min = -4, max = 4, sum = 0}" + NL
+                        + "double[2] = [0.5, NaN] {min = NaN, max = NaN, sum = NaN}" + NL
+                        + "String[4] = [a, null, \u00F1, b]" + NL
+                        + "NAMES: String[2] = [a, b]" + NL
+                        + "int[0] = []" + NL
+                        + "int[] = null" + NL,
+                capture(() -> {
+                    Printer.cyan.print(new long[]{1, Long.MAX_VALUE, 1}, 0, 2);
+                    Printer.cyan.print("TAG", new long[]{-4, 4});
+                    Printer.cyan.print(new double[]{0.5, Double.NaN});
+                    Printer.cyan.print(new String[]{"a", null, "\u00F1", "b"});
+                    Printer.cyan.print("NAMES", new String[]{"a", "b"});
+                    Printer.cyan.print(new int[0]);
+                    Printer.cyan.print((int[]) null);
+                })
+        );
+        // An unbounded window is written in chunks.
+        StringBuilder expected = new StringBuilder("int[1000000] = [");
+        for (int i = 0; i < ints.length; i++) expected.append(i == 0 ? "" : ", ").append(i);
+        Printer.ArrayWindow.stats(false);
+        try {
+            assertEquals(expected.append(']').append(NL).toString(), capture(() -> Printer.cyan.print(ints, Integer.MAX_VALUE, 0)));
+        } finally {
+            Printer.ArrayWindow.stats(true);
+        }
+    }
+
+    @Test
+    void doublesMatchDoubleToString() {
+        Printer.setAnsi(false);
+        SplittableRandom random = new SplittableRandom(7);
+        StringBuilder expected = new StringBuilder();
+        double[] values = new double[20_000];
+        for (int i = 0; i < values.length; i++) {
+            double d = switch (i % 4) {
+                case 0 -> random.nextDouble();
+                case 1 -> random.nextDouble(-1e7, 1e7);
+                case 2 -> Math.round(random.nextDouble(0, 1e5)) / 100.0;
+                default -> Double.longBitsToDouble(random.nextLong());
+            };
+            values[i] = d;
+            expected.append(d).append(NL);
+        }
+        assertEquals(expected.toString(), capture(() -> {
+            for (double d : values) Printer.blue.print(d);
+        }));
+    }
+
+    @Test
+    void zeroAllocationPerCall() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        Printer.setAnsi(true);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        final int iterations = 100_000;
+        calls(iterations);
+        long before = bean.getCurrentThreadAllocatedBytes();
+        calls(iterations);
+        long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(0, allocated / iterations, "Allocated " + allocated + " bytes over " + iterations + " iterations");
+    }
+
+    private static final double[] ARRAY = {0.5, 1, 2.25, 3, 4, 5};
+
+    private static void calls(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            Printer.red.print("TAG", "message");
+            Printer.yellow.print("TAG", i);
+            Printer.green.print((long) i * 31);
+            Printer.cyan.print("TAG", i / 8.0);
+            Printer.purple.print("TAG", (i & 1) == 0);
+            Printer.blue.printf("{} of {}", i, 7L);
+            Printer.cyan.print(ARRAY);
+        }
+    }
+}
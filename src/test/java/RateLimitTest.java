@@ -0,0 +1,122 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitTest {
+    private PrintStream original;
+    private boolean ansi;
+    private ByteArrayOutputStream bytes;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        ansi = Printer.isAnsi();
+        Printer.setAnsi(false);
+        Printer.printStack(false);
+        bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.RateLimit.reset();
+        Printer.RateLimit.key(Printer.RateLimit.Key.call_site);
+        System.setOut(original);
+        Printer.setAnsi(ansi);
+    }
+
+    private String[] lines() {
+        return bytes.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+    }
+
+    @Test
+    void collapsesPerCallSite() {
+        Printer.RateLimit.limit(Printer.red, 0.001, 5);
+        assertTrue(Printer.RateLimit.isActive());
+        for (int i = 0; i < 1_000; i++) Printer.red.print("TAG", i);
+        for (int i = 0; i < 10; i++) Printer.red.print("other line");
+        Printer.green.print("not limited");
+        Printer.RateLimit.flush();
+
+        String[] lines = lines();
+        assertEquals(13, lines.length, Arrays.toString(lines));
+        for (int i = 0; i < 5; i++) assertEquals("TAG: int = " + i, lines[i]);
+        for (int i = 5; i < 10; i++) assertEquals("other line", lines[i]);
+        assertEquals("not limited", lines[10]);
+        String[] summaries = Arrays.copyOfRange(lines, 11, 13);
+        Arrays.sort(summaries);
+        assertTrue(summaries[0].contains("RateLimitTest.collapsesPerCallSite(RateLimitTest.java:"), summaries[0]);
+        assertTrue(summaries[0].contains(": repeated 995 times in "), summaries[0]);
+        assertTrue(summaries[1].contains(": repeated 5 times in "), summaries[1]);
+    }
+
+    @Test
+    void perTagBuckets() {
+        Printer.RateLimit.key(Printer.RateLimit.Key.tag);
+        Printer.RateLimit.limit(0.001, 2);
+        for (int i = 0; i < 100; i++) Printer.blue.print(i % 2 == 0 ? "EVEN" : "ODD", i);
+        Printer.RateLimit.reset();
+        assertFalse(Printer.RateLimit.isActive());
+        Printer.blue.print("after reset");
+
+        String[] lines = lines();
+        assertEquals(
+                Arrays.asList("EVEN: int = 0", "ODD: int = 1", "EVEN: int = 2", "ODD: int = 3"),
+                Arrays.asList(lines).subList(0, 4)
+        );
+        assertEquals(7, lines.length, Arrays.toString(lines));
+        String[] summaries = Arrays.copyOfRange(lines, 4, 6);
+        Arrays.sort(summaries);
+        assertTrue(summaries[0].startsWith("EVEN: repeated 48 times in "), summaries[0]);
+        assertTrue(summaries[1].startsWith("ODD: repeated 48 times in "), summaries[1]);
+        assertEquals("after reset", lines[6]);
+    }
+
+    /**
+     * @return {@code count} tags whose buckets start at the same slot for {@code color}, as hashed by {@link Printer.RateLimit}.
+     * */
+    private static String[] colliding(Printer color, int count) {
+        String[] res = new String[count];
+        int found = 0, home = -1;
+        for (int i = 0; found < count; i++) {
+            String tag = "K" + i;
+            int h = tag.hashCode() * 31 + color.ordinal();
+            int slot = (h ^ (h >>> 16)) & 1023;
+            if (home < 0) home = slot;
+            if (slot == home) res[found++] = tag;
+        }
+        return res;
+    }
+
+    @Test
+    void collidingTagsKeepTheirLimits() {
+        Printer.RateLimit.key(Printer.RateLimit.Key.tag);
+        Printer.RateLimit.limit(0.001, 2);
+        String[] tags = colliding(Printer.cyan, 2);
+        for (int i = 0; i < 100; i++) Printer.cyan.print(tags[i % 2], i);
+        Printer.RateLimit.flush();
+
+        String[] lines = lines();
+        assertEquals(6, lines.length, Arrays.toString(lines));
+        assertEquals(
+                Arrays.asList(tags[0] + ": int = 0", tags[1] + ": int = 1", tags[0] + ": int = 2", tags[1] + ": int = 3"),
+                Arrays.asList(lines).subList(0, 4)
+        );
+
+        // More colliding keys than buckets evict each other, but are still limited.
+        bytes.reset();
+        tags = colliding(Printer.purple, 8);
+        for (int i = 0; i < 800; i++) Printer.purple.print(tags[i % 8], i);
+        long admitted = Arrays.stream(lines()).filter(l -> l.contains(": int = ")).count();
+        assertTrue(admitted <= 8 * 2 + 4, Arrays.toString(lines()));
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecorderTest {
+    private PrintStream original;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        Printer.printStack(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(original);
+        Printer.Recorder.stop();
+        Printer.Recorder.clear();
+    }
+
+    /**
+     * Collects the dumped text.
+     * */
+    static final class Text implements Printer.Sink {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(byte[] b, int offset, int length) {bytes.write(b, offset, length);}
+
+        @Override
+        public String toString() {return bytes.toString(StandardCharsets.UTF_8);}
+    }
+
+    @Test
+    void recordsInsteadOfPrinting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        Printer.Recorder.start();
+        StringBuilder state = new StringBuilder("before");
+        Printer.red.print("TAG", "message");
+        Printer.blue.print(42L);
+        Printer.green.print("TAG", 0.5);
+        Printer.cyan.print((Integer) null);
+        Printer.yellow.print(state);
+        Printer.purple.print("LAZY", () -> "supplied");
+        Printer.Chrono chrono = new Printer.Chrono(Printer.Chrono.Format.nanos, Printer.white, true);
+        chrono.lap();
+        state.append(" and after");
+        Printer.Recorder.stop();
+        Printer.red.print("printed");
+
+        Text text = new Text();
+        assertEquals(8, Printer.Recorder.dump(text));
+        String[] lines = text.toString().split(System.lineSeparator());
+        assertEquals(8, lines.length);
+        assertTrue(lines[0].endsWith(" red TAG: message"), lines[0]);
+        assertTrue(lines[1].endsWith(" blue long = 42"), lines[1]);
+        assertTrue(lines[2].endsWith(" green TAG: 0.5"), lines[2]);
+        assertTrue(lines[3].endsWith(" cyan Integer = null"), lines[3]);
+        // Objects are kept by reference.
+        assertTrue(lines[4].endsWith(" yellow before and after"), lines[4]);
+        assertTrue(lines[5].endsWith(" purple LAZY: supplied"), lines[5]);
+        assertTrue(lines[6].contains(" white Chrono "), lines[6]);
+        assertTrue(lines[7].contains(" white Lapsed at (chrono = "), lines[7]);
+        assertTrue(lines[0].matches("\\d{4}-\\d{2}-\\d{2}T.*Z \\[\\d+] red TAG: message"), lines[0]);
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("printed"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keepsTheLatestRecordsPerStripe() throws Exception {
+        Printer.Recorder.start(16);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String tag = "T" + t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) Printer.green.print(tag, i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        Printer.Recorder.dump(Printer.Export.to_csv, dir.toString(), "flight");
+
+        List<String> rows = Files.readAllLines(dir.resolve("flight.csv"));
+        assertEquals("time,thread,color,tag,message", rows.get(0));
+        assertTrue(rows.size() > 16 && rows.size() <= 1 + 16 * threads.length, "rows: " + rows.size());
+        // Each stripe keeps its latest 16 records, so every thread wrote less than 16 prints after any of its kept records.
+        for (String row : rows.subList(1, rows.size())) {
+            int i = Integer.parseInt(row.substring(row.lastIndexOf(" = ") + 3));
+            assertTrue(i >= 10_000 - 16, row);
+        }
+        assertTrue(rows.stream().anyMatch(row -> row.endsWith("int = 9999")));
+    }
+}
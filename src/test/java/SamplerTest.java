@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SamplerTest {
+    @TempDir
+    Path dir;
+
+    private static StackTraceElement frame(String method, int line) {
+        return new StackTraceElement("Main", method, "Main.java", line);
+    }
+
+    /**
+     * @param outermostFirst the frames from the outermost one.
+     * */
+    private static StackTraceElement[] stack(StackTraceElement... outermostFirst) {
+        StackTraceElement[] stack = new StackTraceElement[outermostFirst.length];
+        for (int i = 0; i < stack.length; i++) stack[i] = outermostFirst[stack.length - 1 - i];
+        return stack;
+    }
+
+    @Test
+    void aggregatesIntoATrie() throws IOException {
+        Printer.Sampler sampler = new Printer.Sampler(Duration.ofMillis(1), Thread.currentThread());
+        StackTraceElement main = frame("main", 1), work = frame("work", 2), parse = frame("parse", 3), recurse = frame("recurse", 4);
+        for (int i = 0; i < 5; i++) sampler.add(stack(main, work, parse));
+        for (int i = 0; i < 3; i++) sampler.add(stack(main, work));
+        sampler.add(stack(main, recurse, recurse, recurse));
+
+        assertEquals(9, sampler.samples());
+        List<Printer.Sampler.Hot> top = sampler.top(10);
+        assertEquals(List.of(
+                new Printer.Sampler.Hot(parse, 5, 5),
+                new Printer.Sampler.Hot(work, 3, 8),
+                new Printer.Sampler.Hot(recurse, 1, 1)
+        ), top);
+
+        Path file = dir.resolve("stacks.collapsed");
+        sampler.writeCollapsed(file);
+        List<String> lines = Files.readAllLines(file);
+        lines.sort(null);
+        assertEquals(List.of(
+                "Main.main:1;Main.recurse:4;Main.recurse:4;Main.recurse:4 1",
+                "Main.main:1;Main.work:2 3",
+                "Main.main:1;Main.work:2;Main.parse:3 5"
+        ), lines);
+
+        sampler.reset();
+        assertEquals(0, sampler.samples());
+        assertTrue(sampler.top(10).isEmpty());
+    }
+
+    private static volatile long sink;
+
+    private static void spin(long until) {
+        long x = 0;
+        while (System.nanoTime() < until) x += Long.numberOfTrailingZeros(x + System.nanoTime());
+        sink = x;
+    }
+
+    @Test
+    void samplesARunningThread() throws InterruptedException, IOException {
+        Thread busy = new Thread(() -> spin(System.nanoTime() + 300_000_000L), "busy");
+        Printer.Sampler sampler = new Printer.Sampler(Duration.ofMillis(2), busy);
+        busy.start();
+        assertTrue(sampler.start());
+        assertFalse(sampler.start());
+        busy.join();
+        assertTrue(sampler.stop());
+        assertFalse(sampler.isRunning());
+        assertTrue(sampler.samples() > 0);
+        Path file = dir.resolve("busy.collapsed");
+        sampler.writeCollapsed(file);
+        String collapsed = Files.readString(file);
+        assertTrue(collapsed.contains("SamplerTest.spin:"), collapsed);
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SinkTest {
+    private static final String NL = System.lineSeparator();
+    private boolean ansi;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        ansi = Printer.isAnsi();
+        Printer.setAnsi(true);
+        Printer.printStack(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.setSink(Printer.Sink.stdout()).close();
+        Printer.setAnsi(ansi);
+    }
+
+    @Test
+    void fileSinkStripsAnsi() throws IOException {
+        Path file = dir.resolve("out.log");
+        Printer.Sink previous = Printer.setSink(Printer.Sink.file(file, 64, false));
+        assertSame(Printer.Sink.stdout(), previous);
+        Printer.red.print("TAG", 42);
+        Printer.blue.print("\u001B[1mbold\u001B[0m \u00F1");
+        new Printer.Chrono(Printer.Chrono.Format.nanos, Printer.green, true);
+        Printer.getSink().flush();
+        String out = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(out.startsWith("TAG: int = 42" + NL + "bold \u00F1" + NL + "Chrono "), out);
+        assertTrue(out.indexOf('\u001B') < 0, out);
+    }
+
+    @Test
+    void closedSinksDropWrites() throws IOException {
+        Path file = dir.resolve("closed.log");
+        Printer.setSink(Printer.Sink.file(file, 64, false));
+        Printer.red.print("before");
+        // As the shutdown hook does, while other threads may still print.
+        Printer.getSink().close();
+        Printer.red.print("after");
+        Printer.red.print("TAG", "x".repeat(100));
+        Printer.getSink().flush();
+        Printer.getSink().close();
+        assertEquals("before" + NL, Files.readString(file, StandardCharsets.UTF_8));
+
+        Printer.setSink(Printer.Sink.rolling(dir.resolve("rolling"), "debug", 64, 1));
+        Printer.getSink().close();
+        Printer.red.print("after");
+        Printer.getSink().close();
+    }
+
+    @Test
+    void rollingSinkKeepsTheLastSegments() throws IOException {
+        Printer.setSink(Printer.Sink.rolling(dir, "debug", 1000, 3));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            Printer.yellow.print("line", i);
+            expected.append("line: int = ").append(i).append(NL);
+        }
+        Printer.setSink(Printer.Sink.stdout()).close();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        assertEquals(3, segments.size());
+        StringBuilder kept = new StringBuilder();
+        for (Path segment : segments) {
+            assertTrue(Files.size(segment) <= 1000);
+            kept.append(Files.readString(segment, StandardCharsets.UTF_8));
+        }
+        assertEquals(1000, Files.size(segments.get(0)));
+        assertTrue(expected.toString().endsWith(kept.toString()));
+        assertTrue(kept.length() > 2000);
+    }
+}
@@ -0,0 +1,119 @@
+import interfaces.ToStringFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StacksTest {
+    private PrintStream original;
+    private boolean ansi;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        ansi = Printer.isAnsi();
+        Printer.setAnsi(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.printStack(false);
+        Printer.Stacks.frames(1);
+        Printer.Stacks.clearCache();
+        System.setOut(original);
+        Printer.setAnsi(ansi);
+    }
+
+    private static String capture(Runnable prints) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        prints.run();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void callSite() {
+        Printer.red.print("from the call site");
+    }
+
+    private static void elapsed(Printer.Chrono chrono) {
+        chrono.elapsed();
+    }
+
+    @Test
+    void provenanceIsTheFirstFrameOutsidePrinter() {
+        Printer.printStack(true);
+        String out = capture(StacksTest::callSite);
+        assertTrue(out.startsWith("from the call site"), out);
+        assertTrue(out.contains("StacksTest.callSite(StacksTest.java:"), out);
+        assertFalse(out.contains("Printer.print("), out);
+
+        // Frames of nested components are dropped too.
+        Printer.Chrono chrono = new Printer.Chrono(Printer.Chrono.Format.nanos, Printer.blue);
+        chrono.silentStart();
+        out = capture(() -> elapsed(chrono));
+        assertTrue(out.startsWith("Elapsed"), out);
+        assertTrue(out.contains("StacksTest.elapsed(StacksTest.java:"), out);
+        assertFalse(out.contains("Printer$Chrono"), out);
+    }
+
+    @Test
+    void provenanceIsCachedPerCallSite() {
+        Printer.printStack(true);
+        String[] lines = capture(() -> {
+            for (int i = 0; i < 3; i++) Printer.green.print("loop");
+        }).split("loop");
+        assertEquals(4, lines.length);
+        assertEquals(lines[1], lines[2]);
+        assertEquals(lines[1], lines[3]);
+        String other = capture(() -> Printer.green.print("loop")).substring("loop".length());
+        assertNotEquals(lines[1], other);
+
+        // Reassigning the prefix invalidates the cached text.
+        String prefix = ToStringFunction.StackPrinter.params.prefix;
+        try {
+            ToStringFunction.StackPrinter.params.prefix = " @ ";
+            String out = capture(StacksTest::callSite);
+            assertTrue(out.startsWith("from the call site @ "), out);
+        } finally {
+            ToStringFunction.StackPrinter.params.prefix = prefix;
+        }
+    }
+
+    @Test
+    void frames() {
+        assertEquals(1, Printer.Stacks.frames());
+        Printer.Stacks.frames(4);
+        assertEquals(4, Printer.Stacks.frames());
+        Printer.printStack(true);
+        String out = capture(StacksTest::callSite);
+        assertTrue(out.contains("StacksTest.callSite(StacksTest.java:"), out);
+        assertThrows(IllegalArgumentException.class, () -> Printer.Stacks.frames(0));
+    }
+
+    private static String outer() {return inner();}
+
+    private static String inner() {return Printer.depthStack(2);}
+
+    private static String caller() {return Printer.thisStack();}
+
+    @Test
+    void depthAndThisStack() {
+        // depthStack skips itself, inner() and outer().
+        String depth = outer();
+        assertTrue(depth.startsWith("StacksTest.depthAndThisStack(StacksTest.java:"), depth);
+        assertEquals(2, depth.split(", \n ").length, depth);
+        assertFalse(depth.contains("StacksTest.inner"), depth);
+
+        String self = caller();
+        assertTrue(self.startsWith("StacksTest.depthAndThisStack(StacksTest.java:"), self);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        Printer.Chrono.Trace.stop();
+    }
+
+    private static int count(String text, String regex) {
+        Matcher matcher = Pattern.compile(regex).matcher(text);
+        int count = 0;
+        while (matcher.find()) count++;
+        return count;
+    }
+
+    @Test
+    void streamsEventsOfEveryThread() throws Exception {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Path file = dir.resolve("trace.json");
+        try {
+            // A tiny capacity forces every thread to stream its buffer several times.
+            assertTrue(Printer.Chrono.Trace.start(file, 3));
+            assertFalse(Printer.Chrono.Trace.start(file));
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    Printer.Chrono chrono = new Printer.Chrono(Printer.red);
+                    chrono.silentStart();
+                    for (int i = 0; i < 10; i++) {
+                        Printer.Chrono.Span span = Printer.Chrono.span("work \"quoted\"");
+                        chrono.lap();
+                        span.close();
+                    }
+                    chrono.elapsed();
+                }, "worker," + t);
+                threads[t].start();
+            }
+            for (Thread thread : threads) thread.join();
+            assertEquals(4 * (1 + 10 + 10 + 1) + 4, Printer.Chrono.Trace.stop());
+        } finally {
+            System.setOut(original);
+        }
+        assertEquals(-1, Printer.Chrono.Trace.stop());
+
+        String json = Files.readString(file);
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[\n{"), json);
+        assertTrue(json.endsWith("}\n]}\n"), json);
+        assertEquals(4, count(json, "\"name\":\"thread_name\""));
+        assertEquals(4, count(json, "\"ph\":\"i\""));
+        assertEquals(40, count(json, "\"name\":\"lap\",\"cat\":\"chrono=\\d+,red,thread=worker \\d\",\"ph\":\"X\""));
+        assertEquals(40, count(json, "\"name\":\"work \\\\\"quoted\\\\\"\",\"cat\":\"span,thread=worker \\d\""));
+        assertEquals(4, count(json, "\"name\":\"elapsed\""));
+        assertEquals(4 * 22 + 3, count(json, "\\},\n\\{"));
+    }
+
+    @Test
+    void dropsTheBuffersOfTerminatedThreads() throws Exception {
+        Path file = dir.resolve("threads.json");
+        assertTrue(Printer.Chrono.Trace.start(file, 1 << 10));
+        int max = 0;
+        for (int t = 0; t < 50; t++) {
+            Thread thread = new Thread(() -> Printer.Chrono.span("short lived").close(), "short," + t);
+            thread.start();
+            thread.join();
+            max = Math.max(max, Printer.Chrono.Trace.buffers());
+        }
+        assertTrue(max <= 8, "buffers: " + max);
+        Printer.Chrono.Trace.flush();
+        assertEquals(0, Printer.Chrono.Trace.buffers());
+        assertEquals(50 * 2, Printer.Chrono.Trace.stop());
+
+        String json = Files.readString(file);
+        assertEquals(50, count(json, "\"name\":\"short lived\",\"cat\":\"span,thread=short \\d+\""));
+        assertTrue(json.endsWith("}\n]}\n"), json);
+    }
+}
@@ -0,0 +1,138 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs on JDK 21+ only, the virtual thread executor is looked up reflectively so that the sources still compile on 17.
+ * */
+class VirtualThreadTest {
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final int THREADS = 100_000;
+
+    @TempDir
+    Path dir;
+    private PrintStream original;
+
+    @BeforeEach
+    void setUp() {
+        original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Printer.printStack(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Printer.Async.disable();
+        System.setOut(original);
+    }
+
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static void await(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+    }
+
+    /**
+     * @return the stacks of the {@link #PINNED} events, one {@link String} per event.
+     * */
+    private List<String> pinned(Recording recording) throws IOException {
+        Path file = dir.resolve("pinning.jfr");
+        recording.dump(file);
+        List<String> stacks = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (!event.getEventType().getName().equals(PINNED)) continue;
+            StringBuilder stack = new StringBuilder();
+            if (event.getStackTrace() != null) {
+                for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                    stack.append(frame.getMethod().getType().getName()).append('.')
+                            .append(frame.getMethod().getName()).append('\n');
+                }
+            }
+            stacks.add(stack.toString());
+        }
+        return stacks;
+    }
+
+    private static void work(int i, Printer.Chrono shared) {
+        Printer color = Printer.values()[i % Printer.values().length];
+        color.print("TAG", i);
+        color.printf("virtual {} of {}", i, THREADS);
+        shared.syncLap();
+        shared.lap();
+        if (i % 1_000 == 0) Printer.Async.flush();
+    }
+
+    @Test
+    void printsWithoutPinningCarriers() throws Exception {
+        ExecutorService executor = virtualThreads();
+        assumeTrue(executor != null, "virtual threads require JDK 21");
+        Printer.Chrono shared = new Printer.Chrono(Printer.blue);
+        shared.silentStart();
+
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            // A monitor held while parking, to prove the events are being recorded.
+            Object monitor = new Object();
+            executor.submit(() -> {
+                synchronized (monitor) {
+                    LockSupport.parkNanos(1_000_000);
+                }
+            }).get();
+
+            for (int i = 0; i < THREADS / 2; i++) {
+                final int n = i;
+                executor.submit(() -> work(n, shared));
+            }
+            await(executor);
+
+            // The same load handed off to the platform writer thread.
+            Printer.Async.enable(1 << 10, Printer.Async.Backpressure.block);
+            ExecutorService async = virtualThreads();
+            for (int i = THREADS / 2; i < THREADS; i++) {
+                final int n = i;
+                async.submit(() -> work(n, shared));
+            }
+            await(async);
+            Printer.Async.disable();
+            recording.stop();
+
+            List<String> stacks = pinned(recording);
+            assertFalse(stacks.isEmpty(), "no " + PINNED + " event was recorded");
+            List<String> printer = new ArrayList<>();
+            for (String stack : stacks) {
+                if (stack.startsWith("Printer") || stack.contains("\nPrinter")) printer.add(stack);
+            }
+            assertTrue(printer.isEmpty(), () -> printer.size() + " pinned in Printer, first:\n" + printer.get(0));
+        }
+    }
+}